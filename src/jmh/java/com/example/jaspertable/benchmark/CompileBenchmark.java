@@ -0,0 +1,48 @@
+package com.example.jaspertable.benchmark;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compilation of a {@code .jrxml} template, as done on a cache miss when no precompiled
+ * {@code .jasper} file is available and by the external template watcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CompileBenchmark {
+
+    @Param({"anketa", "checklist", "checklist_subreport", "forma1", "forma1-relative", "relative", "relative-2",
+            "res-1", "results", "results-2", "templ", "template", "tz"})
+    public String template;
+
+    private byte[] jrxml;
+
+    @Setup
+    public void setUp() {
+        jrxml = SyntheticPayloads.jrxml(template);
+    }
+
+    @Benchmark
+    public JasperReport compile() throws JRException {
+        return JasperCompileManager.compileReport(new ByteArrayInputStream(jrxml));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.jaspertable.benchmark;
+
+import com.example.jaspertable.JasperTableApplication;
+import com.example.jaspertable.service.ExportOptions;
+import com.example.jaspertable.service.JReportService;
+import net.sf.jasperreports.engine.JRException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JReportService#automated} from parsed request data to the PDF in the response, with the
+ * application context the service runs in. The output cache is disabled, so every invocation
+ * resolves, fills and exports; logging is reduced so that it does not dominate the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"anketa", "checklist", "forma1", "results", "results-2", "template", "tz"})
+    public String template;
+
+    @Param({"1", "25"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private JReportService jReportService;
+    private LinkedHashMap<String, List<Map<String, Object>>> payload;
+
+    @Setup
+    public void setUp() throws JRException {
+        context = new SpringApplicationBuilder(JasperTableApplication.class)
+                .web(WebApplicationType.NONE)
+                // Arguments rather than default properties, so that they override application.properties
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.jaspertable=WARN",
+                        "--jasper.cache.enabled=false",
+                        "--jasper.warmup.enabled=false");
+        jReportService = context.getBean(JReportService.class);
+        payload = SyntheticPayloads.payload(template, SyntheticPayloads.compile(template), rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int automated() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jReportService.automated(template, payload, null, ExportOptions.DEFAULT, null, response);
+        return response.getContentAsByteArray().length;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.jaspertable.benchmark;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.service.CompiledTemplate;
+import com.example.jaspertable.service.ExportOptions;
+import com.example.jaspertable.service.PdfProfile;
+import com.example.jaspertable.service.ReportExporter;
+import com.example.jaspertable.service.StaticLayerCache;
+import com.example.jaspertable.service.TemplateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF export of a filled document in each PDF profile, with images prepared for that profile, with
+ * and without the static layers of {@link StaticLayerCache}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FilledTemplate {
+
+        @Param({"fast", "balanced", "smallest"})
+        public String profile;
+
+        @Param({"false", "true"})
+        public boolean staticLayers;
+
+        JasperPrint jasperPrint;
+        ExportOptions options;
+        ReportExporter reportExporter;
+
+        @Setup
+        public void fill(PreparedTemplate prepared) throws JRException {
+            PdfProfile pdfProfile = PdfProfile.of(profile);
+            jasperPrint = prepared.fill(prepared.prepare(pdfProfile));
+            options = ExportOptions.DEFAULT.withProfile(pdfProfile);
+            ReportProperties properties = new ReportProperties();
+            if (staticLayers) {
+                properties.getStaticLayers().getReports().add(prepared.template);
+            }
+            StaticLayerCache staticLayerCache = new StaticLayerCache(properties, new SimpleMeterRegistry());
+            staticLayerCache.register(new CompiledTemplate(prepared.template, prepared.report,
+                    CompiledTemplate.Source.CLASSPATH, 1, TemplateRegistry.fingerprint(SyntheticPayloads.jrxml(prepared.template))));
+            reportExporter = new ReportExporter(properties, staticLayerCache);
+        }
+    }
+
+    @Benchmark
+    public int exportPdf(FilledTemplate state) throws JRException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        state.reportExporter.export(List.of(state.jasperPrint), state.options, out);
+        return out.size();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.jaspertable.benchmark;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.service.ImagePreprocessor;
+import com.example.jaspertable.service.PdfProfile;
+import com.example.jaspertable.service.ReportMetrics;
+import com.example.jaspertable.service.datasource.ColumnLayout;
+import com.example.jaspertable.service.datasource.ColumnarTable;
+import com.example.jaspertable.service.datasource.ListSectionDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled template with synthetic rows whose images were already prepared for the
+ * {@code balanced} PDF profile, ready to be filled through the master template the same way
+ * {@code JReportService} does.
+ */
+@State(Scope.Benchmark)
+public class PreparedTemplate {
+
+    @Param({"anketa", "checklist", "checklist_subreport", "forma1", "forma1-relative", "relative", "relative-2",
+            "res-1", "results", "results-2", "templ", "template", "tz"})
+    public String template;
+
+    @Param({"1", "25"})
+    public int rows;
+
+    protected JasperReport master;
+    protected JasperReport report;
+    protected List<Map<String, Object>> rawRows;
+    protected List<Map<String, Object>> preparedRows;
+    private ImagePreprocessor imagePreprocessor;
+
+    @Setup
+    public void prepare() throws JRException {
+        master = SyntheticPayloads.compile("master");
+        report = SyntheticPayloads.compile(template);
+        imagePreprocessor = new ImagePreprocessor(new ReportProperties(), new ReportMetrics(new SimpleMeterRegistry()));
+        rawRows = SyntheticPayloads.payload(template, report, rows).get(template);
+        preparedRows = prepare(PdfProfile.BALANCED);
+    }
+
+    /**
+     * Prepares the images of the rows for a PDF profile.
+     *
+     * @param profile the PDF profile
+     * @return the prepared rows
+     */
+    public List<Map<String, Object>> prepare(PdfProfile profile) {
+        List<Map<String, Object>> prepared = new ArrayList<>(rawRows.size());
+        for (Map<String, Object> row : rawRows) {
+            prepared.add(imagePreprocessor.prepare(template, report, row, profile));
+        }
+        return prepared;
+    }
+
+    /**
+     * Fills the master template with one section per row.
+     *
+     * @return the filled document
+     * @throws JRException if the fill fails
+     */
+    public JasperPrint fill() throws JRException {
+        return fill(preparedRows);
+    }
+
+    /**
+     * Fills the master template with one section per row.
+     *
+     * @param rows the prepared rows
+     * @return the filled document
+     * @throws JRException if the fill fails
+     */
+    public JasperPrint fill(List<Map<String, Object>> rows) throws JRException {
+        ColumnarTable table = new ColumnarTable(ColumnLayout.of(report), rows.size());
+        ListSectionDataSource sections = new ListSectionDataSource();
+        for (Map<String, Object> row : rows) {
+            sections.add(report, table.row(table.add(row)));
+        }
+        return JasperFillManager.fillReport(master, new HashMap<>(), sections);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.jaspertable.benchmark;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic report data derived from the field list of each packaged template, so that every
+ * template can be benchmarked without hand-written sample payloads.
+ * <p>
+ * {@code java.lang.String} fields receive a short text, {@code java.lang.Object} fields (photos)
+ * a base64 JPEG of the size of a typical scanned photo.
+ */
+public final class SyntheticPayloads {
+
+    private static final String TEMPLATE_LOCATION = "reports/report/";
+    private static final String TEXT = "Lorem ipsum dolor sit amet";
+    private static final String PHOTO = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(photo(600, 800));
+
+    private SyntheticPayloads() {
+    }
+
+    /**
+     * Reads the source of a packaged template.
+     *
+     * @param template the template name, e.g. {@code tz}
+     * @return the {@code .jrxml} content
+     */
+    public static byte[] jrxml(String template) {
+        String path = TEMPLATE_LOCATION + template + ".jrxml";
+        try (InputStream in = SyntheticPayloads.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Template not found: " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compiles a packaged template.
+     *
+     * @param template the template name
+     * @return the compiled template
+     * @throws JRException if the template does not compile
+     */
+    public static JasperReport compile(String template) throws JRException {
+        return JasperCompileManager.compileReport(new ByteArrayInputStream(jrxml(template)));
+    }
+
+    /**
+     * Builds one row with a value for every field of a template.
+     *
+     * @param report the compiled template
+     * @return the row, as it would be parsed from a request
+     */
+    public static Map<String, Object> row(JasperReport report) {
+        Map<String, Object> row = new HashMap<>();
+        if (report.getFields() != null) {
+            for (JRField field : report.getFields()) {
+                if (String.class.equals(field.getValueClass())) {
+                    row.put(field.getName(), TEXT);
+                } else if (Object.class.equals(field.getValueClass())) {
+                    row.put(field.getName(), PHOTO);
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Builds a request payload with a single template group.
+     *
+     * @param template the template name
+     * @param report   the compiled template
+     * @param rows     the number of rows
+     * @return the payload, keyed by template name
+     */
+    public static LinkedHashMap<String, List<Map<String, Object>>> payload(String template, JasperReport report, int rows) {
+        List<Map<String, Object>> values = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            values.add(row(report));
+        }
+        LinkedHashMap<String, List<Map<String, Object>>> payload = new LinkedHashMap<>();
+        payload.put(template, values);
+        return payload;
+    }
+
+    private static byte[] photo(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, Color.LIGHT_GRAY, width, height, Color.DARK_GRAY));
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(Color.WHITE);
+            graphics.fillOval(width / 4, height / 8, width / 2, height / 3);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpeg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
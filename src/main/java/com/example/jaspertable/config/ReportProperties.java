@@ -0,0 +1,541 @@
+package com.example.jaspertable.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Configuration of the report pipeline, bound from the {@code jasper.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "jasper")
+public class ReportProperties {
+
+    /**
+     * Template loading settings.
+     */
+    private Templates templates = new Templates();
+
+    /**
+     * Asynchronous report job settings.
+     */
+    private Jobs jobs = new Jobs();
+
+    /**
+     * Per-template concurrency limits.
+     */
+    private Bulkhead bulkhead = new Bulkhead();
+
+    /**
+     * Scheduling of render work by priority class.
+     */
+    private Priority priority = new Priority();
+
+    /**
+     * Page virtualization for large fills.
+     */
+    private Virtualizer virtualizer = new Virtualizer();
+
+    /**
+     * Batch generation settings.
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * Cache of rendered documents.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Preparation of base64 image fields before the fill.
+     */
+    private Images images = new Images();
+
+    /**
+     * Template warm-up after startup.
+     */
+    private Warmup warmup = new Warmup();
+
+    /**
+     * Export settings for formats other than PDF.
+     */
+    private Export export = new Export();
+
+    /**
+     * Size profiles of PDF documents.
+     */
+    private Pdf pdf = new Pdf();
+
+    /**
+     * Parallel fill of the template groups of a request.
+     */
+    private Book book = new Book();
+
+    /**
+     * On-demand Java Flight Recorder sessions.
+     */
+    private Jfr jfr = new Jfr();
+
+    /**
+     * Export of PDFs while they are still being filled.
+     */
+    private Progressive progressive = new Progressive();
+
+    /**
+     * Disk store of rendered documents for re-download.
+     */
+    private Store store = new Store();
+
+    /**
+     * Second-level cache of compiled templates and rendered documents shared by several instances.
+     */
+    private SharedCache sharedCache = new SharedCache();
+
+    /**
+     * Caching of the data-independent parts of templates.
+     */
+    private StaticLayers staticLayers = new StaticLayers();
+
+    @Data
+    public static class Templates {
+
+        /**
+         * Directory with {@code .jrxml} files that override or extend the templates packaged
+         * under {@code reports/report/}. Watched for changes; disabled when blank.
+         */
+        private String externalDir;
+
+        /**
+         * Quiet period after a file change before it is recompiled, so that editors writing
+         * a file in several steps trigger a single compilation.
+         */
+        private Duration reloadDelay = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Jobs {
+
+        /**
+         * Number of threads rendering jobs concurrently.
+         */
+        private int workers = 2;
+
+        /**
+         * Number of jobs that may wait for a worker; further submissions are rejected with 429.
+         */
+        private int queueCapacity = 50;
+
+        /**
+         * How long a finished job and its PDF are kept for polling.
+         */
+        private Duration ttl = Duration.ofMinutes(15);
+
+        /**
+         * Total size of the PDFs of finished jobs kept in memory; beyond it the oldest finished jobs
+         * are evicted before their TTL.
+         */
+        private DataSize maxRetainedSize = DataSize.ofMegabytes(256);
+
+        /**
+         * Retry delay suggested to clients whose submission was rejected.
+         */
+        private Duration retryAfter = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Bulkhead {
+
+        /**
+         * Whether fills are limited per template.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Concurrent fills allowed per template without an explicit limit; defaults to the number of CPUs.
+         */
+        private int defaultLimit = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Concurrent fills allowed per template name, e.g. {@code jasper.bulkhead.limits[results-2]=2}.
+         */
+        private Map<String, Integer> limits = new HashMap<>();
+
+        /**
+         * How long a request waits for a free slot before it is rejected with 429.
+         */
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Priority {
+
+        /**
+         * Whether render work waits for a slot of the priority scheduler.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Documents rendered at the same time across all classes; defaults to twice the number of
+         * CPUs, as documents that are not cached are written to the client while they hold a slot.
+         */
+        private int concurrency = 2 * Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Request header naming the priority class of a request.
+         */
+        private String header = "X-Report-Priority";
+
+        /**
+         * Request header identifying the calling system, looked up in {@code clients}.
+         */
+        private String clientHeader = "X-Client-Id";
+
+        /**
+         * Priority class by client id, e.g. {@code jasper.priority.clients.backoffice=bulk}; takes
+         * precedence over the class the request names.
+         */
+        private Map<String, String> clients = new HashMap<>();
+
+        /**
+         * Class of HTTP requests that name none.
+         */
+        private String defaultClass = "interactive";
+
+        /**
+         * Class of work rendered outside of an HTTP request: batch documents, jobs and warm-up fills.
+         */
+        private String backgroundClass = "bulk";
+
+        /**
+         * Priority classes by name, e.g. {@code jasper.priority.classes.bulk.weight=1}.
+         */
+        private Map<String, PriorityClass> classes = new HashMap<>(Map.of(
+                "interactive", new PriorityClass(4, 50, Duration.ofSeconds(10)),
+                "bulk", new PriorityClass(1, 100, Duration.ofMinutes(2))));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriorityClass {
+
+        /**
+         * Share of the slots freed while several classes wait, relative to the other classes.
+         */
+        private int weight = 1;
+
+        /**
+         * Documents of the class that may wait for a slot; further requests are rejected with 429.
+         */
+        private int queueCapacity = 50;
+
+        /**
+         * How long a document of the class may wait for a slot; it is dropped, with 429, if it has
+         * not started by then.
+         */
+        private Duration deadline = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Virtualizer {
+
+        public enum Type {
+            /** Pages are serialized to a per-request swap file on disk. */
+            SWAP,
+            /** Pages are kept in memory but gzip-compressed. */
+            GZIP
+        }
+
+        /**
+         * Whether large fills are virtualized.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How pages beyond {@link #maxPagesInMemory} are stored.
+         */
+        private Type type = Type.SWAP;
+
+        /**
+         * Number of data rows from which a fill is virtualized.
+         */
+        private int rowThreshold = 50;
+
+        /**
+         * Request payload size from which a fill is virtualized.
+         */
+        private DataSize payloadThreshold = DataSize.ofMegabytes(8);
+
+        /**
+         * Number of filled pages kept uncompressed on the heap.
+         */
+        private int maxPagesInMemory = 10;
+
+        /**
+         * Parent directory of the per-request swap directories; the system temp directory when blank.
+         */
+        private String swapDir;
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Number of documents of one batch rendered at the same time; also bounds how many parsed
+         * payloads and finished PDFs of a batch are held in memory. Defaults to the number of CPUs.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Whether rendered PDFs are cached and served with an {@code ETag}.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Upper bound of the total size of cached PDFs.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+
+        /**
+         * PDFs larger than this are returned to the caller but not kept in the cache.
+         */
+        private DataSize maxEntrySize = DataSize.ofMegabytes(16);
+
+        /**
+         * How long a rendered PDF is kept after it was produced.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * Whether a render request with a matching {@code If-None-Match} is answered with
+         * {@code 304 Not Modified}. Off by default, as conditional requests are only defined for
+         * safe methods and clients do not expect a 304 in response to a POST.
+         */
+        private boolean conditionalPost = false;
+    }
+
+    @Data
+    public static class Images {
+
+        /**
+         * Whether images are downscaled, recompressed and cached. When disabled, images are only
+         * decoded for templates that expect image bytes.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Resolution images are downscaled to, relative to the size of the image element.
+         */
+        private int dpi = 150;
+
+        /**
+         * Quality of recompressed JPEG images, from 0 to 1.
+         */
+        private float jpegQuality = 0.85f;
+
+        /**
+         * Upper bound of the total size of prepared images kept for reuse.
+         */
+        private DataSize cacheSize = DataSize.ofMegabytes(64);
+    }
+
+    @Data
+    public static class Warmup {
+
+        /**
+         * Whether every template is rendered once after startup; readiness is reported only after
+         * the warm-up has finished.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Whether the application shuts down once the warm-up has finished, for a training run that
+         * records the classes a report needs, e.g. into a class data sharing archive.
+         */
+        private boolean exit = false;
+
+        /**
+         * Number of templates that may fail the warm-up while the instance still reports ready;
+         * unlimited if not set. The instance never reports ready if the master or every template failed.
+         */
+        private Integer maxFailures;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Zoom of PNG page previews; 1 renders one pixel per point.
+         */
+        private float pngZoom = 1.5f;
+    }
+
+    @Data
+    public static class Pdf {
+
+        /**
+         * Profile of reports that have none in {@code report-profiles} when a request names none:
+         * {@code fast}, {@code balanced} or {@code smallest}.
+         */
+        private String profile = "balanced";
+
+        /**
+         * Profile by report name, e.g. {@code jasper.pdf.report-profiles.results=smallest}.
+         */
+        private Map<String, String> reportProfiles = new HashMap<>();
+
+        /**
+         * Resolution images are downscaled to in the {@code smallest} profile, relative to the size
+         * of the image element.
+         */
+        private int smallestImageDpi = 96;
+
+        /**
+         * Quality images are recompressed with in the {@code smallest} profile, from 0 to 1.
+         */
+        private float smallestJpegQuality = 0.6f;
+    }
+
+    @Data
+    public static class Book {
+
+        /**
+         * Whether the template groups of a request are filled in parallel, each into its own print,
+         * and exported as one document. Every group then starts on a new page, and an image shown in
+         * several groups is embedded once per group.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of threads filling groups, shared by all requests; the request thread fills its first
+         * group itself. Defaults to the number of CPUs.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Jfr {
+
+        /**
+         * Whether recordings can be started through the {@code jfr} actuator endpoint.
+         */
+        private boolean enabled = false;
+
+        /**
+         * JFR settings used when a request does not name any, {@code default} or {@code profile}.
+         */
+        private String settings = "profile";
+
+        /**
+         * Length of a recording when a request does not specify one.
+         */
+        private Duration defaultDuration = Duration.ofSeconds(60);
+
+        /**
+         * Upper bound of the requested recording length.
+         */
+        private Duration maxDuration = Duration.ofMinutes(5);
+
+        /**
+         * Upper bound of the recording size on disk; older data is discarded beyond it.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+    }
+
+    @Data
+    public static class Progressive {
+
+        /**
+         * Whether whole-document PDFs are filled in the background and their finished pages written
+         * to the response while the rest of the document is being filled.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum number of finished pages written at a time. Every chunk is exported as a part of
+         * the document, so an image shown in several chunks is embedded once per chunk.
+         */
+        private int chunkPages = 10;
+    }
+
+    @Data
+    public static class Store {
+
+        /**
+         * Whether rendered PDFs are kept on disk and can be downloaded again from {@code /reports/{id}}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the stored documents; {@code report-store} in the system temp directory when blank.
+         */
+        private String dir;
+
+        /**
+         * How long a stored document can be downloaded after it was last rendered or served from the cache.
+         */
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class SharedCache {
+
+        /**
+         * Whether compiled templates and rendered PDFs are also kept in a directory shared with other
+         * instances, e.g. a volume mounted into every replica.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the shared cache; {@code report-cache} in the system temp directory when blank.
+         */
+        private String dir;
+
+        /**
+         * How long a rendered PDF is kept in the shared cache after it was produced. Compiled
+         * templates are kept for as long after they were last used.
+         */
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class StaticLayers {
+
+        /**
+         * Whether the layout of static texts is reused between fills, and the static elements of the
+         * pages of the templates in {@code reports} are exported once and reused as a PDF form by
+         * every page laid out alike.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Names of the templates whose pages are exported over pre-rendered static layers, e.g.
+         * {@code jasper.static-layers.reports=checklist,forma1}. A layer carries its own copy of the
+         * fonts it uses, so this pays off for forms that look the same in every document, not for
+         * reports whose pages are laid out by the data.
+         */
+        private Set<String> reports = new HashSet<>();
+
+        /**
+         * Maximum number of static text layouts kept.
+         */
+        private int maxTexts = 10_000;
+
+        /**
+         * Upper bound of the total size of pre-rendered static layers.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(32);
+    }
+}
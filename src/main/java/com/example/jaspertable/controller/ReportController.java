@@ -3,18 +3,21 @@ package com.example.jaspertable.controller;
 import com.example.jaspertable.exception.BadRequestException;
 import com.example.jaspertable.exception.ReportGenerationException;
 import com.example.jaspertable.exception.ResourceNotFoundException;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import com.example.jaspertable.service.BatchReportService;
+import com.example.jaspertable.service.ExportOptions;
 import com.example.jaspertable.service.JReportService;
+import com.example.jaspertable.service.ReportPayloadReader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
@@ -23,29 +26,107 @@ import java.util.Map;
 public class ReportController {
 
     private final JReportService jReportService;
+    private final BatchReportService batchReportService;
+    private final ReportPayloadReader reportPayloadReader;
 
     /**
-     * Generates a report with the given file name using the provided data.
+     * Generates a report with the given file name using the provided data. Besides JSON, the data
+     * can be sent as CBOR ({@code application/cbor}) or Smile ({@code application/x-jackson-smile}),
+     * where images may be byte strings instead of base64 text.
      *
-     * @param requestBody the data to include in the report
      * @param fileName    the name of the report file/template to use
+     * @param format      the export format ({@code pdf}, {@code docx}, {@code xlsx}, {@code html}, {@code png});
+     *                    if absent it is negotiated from the {@code Accept} header
+     * @param pages       the pages to export, e.g. {@code 1}, {@code 2-5} or {@code 3-}; all pages if absent
+     * @param profile     the PDF profile ({@code fast}, {@code balanced}, {@code smallest}); the one
+     *                    configured for the report if absent
+     * @param accept      the {@code Accept} header
+     * @param ifNoneMatch the entity tag of a copy the client already has, answered with 304 if unchanged
+     *                    and {@code jasper.cache.conditional-post} is enabled
+     * @param request     the HTTP request to read the report data from
      * @param response    the HTTP response to write the report to
      */
-    @PostMapping("/{file_name}")
+    @PostMapping(value = "/{file_name}", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, ReportPayloadReader.APPLICATION_SMILE_VALUE})
     public void generateResultsReport(
-            @RequestBody LinkedHashMap<String, List<Map<String, Object>>> requestBody,
             @PathVariable("file_name") String fileName,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "pages", required = false) String pages,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
             HttpServletResponse response) {
         
         log.info("Generating report for file: {}", fileName);
-        
-        if (requestBody == null || requestBody.isEmpty()) {
+        ExportOptions options = exportOptions(format, pages, profile, accept);
+
+        ReportPayloadReader.Payload payload;
+        try {
+            payload = reportPayloadReader.read(request.getInputStream(), request.getContentType());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (IOException e) {
+            log.error("IO error while reading request: {}", e.getMessage(), e);
+            throw new ReportGenerationException("Error reading request", e);
+        }
+        generate(fileName, payload, options, ifNoneMatch, response);
+    }
+
+    /**
+     * Generates a report like {@link #generateResultsReport} from a multipart request, so that
+     * images are sent as raw binary parts instead of base64 text. The report data is the part
+     * named {@code data}, as JSON, CBOR or Smile; a row refers to an image part by its name,
+     * e.g. {@code "photo": "cid:photo-1"}.
+     *
+     * @param fileName    the name of the report file/template to use
+     * @param format      the export format, see {@link #generateResultsReport}
+     * @param pages       the pages to export, see {@link #generateResultsReport}
+     * @param profile     the PDF profile, see {@link #generateResultsReport}
+     * @param accept      the {@code Accept} header
+     * @param ifNoneMatch the entity tag of a copy the client already has, see {@link #generateResultsReport}
+     * @param request     the multipart request
+     * @param response    the HTTP response to write the report to
+     */
+    @PostMapping(value = "/{file_name}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void generateMultipartReport(
+            @PathVariable("file_name") String fileName,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "pages", required = false) String pages,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        log.info("Generating report for file: {} from a multipart request", fileName);
+        ExportOptions options = exportOptions(format, pages, profile, accept);
+
+        ReportPayloadReader.Payload payload;
+        try {
+            payload = reportPayloadReader.readMultipart(request);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (IOException e) {
+            log.error("IO error while reading multipart request: {}", e.getMessage(), e);
+            throw new ReportGenerationException("Error reading multipart request", e);
+        }
+        generate(fileName, payload, options, ifNoneMatch, response);
+    }
+
+    private void generate(String fileName, ReportPayloadReader.Payload payload, ExportOptions options,
+                          String ifNoneMatch, HttpServletResponse response) {
+        if (payload.data().isEmpty()) {
             throw new BadRequestException("Report data cannot be empty");
         }
-        
+
         try {
-            jReportService.automated(fileName, requestBody, response);
+            jReportService.automated(fileName, payload.data(), payload.digest(), options, ifNoneMatch, response);
             log.info("Report generated successfully for file: {}", fileName);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (BadRequestException | TooManyRequestsException e) {
+            throw e;
         } catch (IOException e) {
             log.error("IO error while generating report: {}", e.getMessage(), e);
             throw new ReportGenerationException("Error writing report to response", e);
@@ -54,4 +135,86 @@ public class ReportController {
             throw ReportGenerationException.forFile(fileName, e);
         }
     }
+
+    /**
+     * Generates a report like {@link #generateResultsReport} but parses the request body
+     * row by row while the report is filled instead of binding it up front, so memory usage
+     * scales with the largest row rather than the whole request. The body is JSON, CBOR or Smile.
+     *
+     * @param fileName the name of the report file
+     * @param format   the export format, see {@link #generateResultsReport}
+     * @param pages    the pages to export, see {@link #generateResultsReport}
+     * @param profile  the PDF profile, see {@link #generateResultsReport}
+     * @param accept   the {@code Accept} header
+     * @param request  the HTTP request to read the report data from
+     * @param response the HTTP response to write the report to
+     */
+    @PostMapping(value = "/{file_name}/stream", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, ReportPayloadReader.APPLICATION_SMILE_VALUE})
+    public void generateStreamedReport(
+            @PathVariable("file_name") String fileName,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "pages", required = false) String pages,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        log.info("Generating streamed report for file: {}", fileName);
+        ExportOptions options = exportOptions(format, pages, profile, accept);
+
+        try {
+            jReportService.automatedStreaming(fileName, request.getInputStream(), request.getContentLengthLong(),
+                    request.getContentType(), options, response);
+            log.info("Streamed report generated successfully for file: {}", fileName);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (BadRequestException | TooManyRequestsException e) {
+            throw e;
+        } catch (IOException e) {
+            log.error("IO error while generating streamed report: {}", e.getMessage(), e);
+            throw new ReportGenerationException("Error writing report to response", e);
+        } catch (Exception e) {
+            log.error("Error generating streamed report: {}", e.getMessage(), e);
+            throw ReportGenerationException.forFile(fileName, e);
+        }
+    }
+
+    /**
+     * Generates one report per element of a JSON array and streams them back as a ZIP archive.
+     * Documents are rendered in parallel and written as soon as each one is ready.
+     *
+     * @param fileName the name of the report file
+     * @param request  the HTTP request to read the report payloads from
+     * @param response the HTTP response to write the archive to
+     */
+    @PostMapping(value = "/{file_name}/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void generateBatchReport(
+            @PathVariable("file_name") String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        log.info("Generating batch report for file: {}", fileName);
+
+        try {
+            batchReportService.generateBatch(fileName, request.getInputStream(), response);
+            log.info("Batch report generated successfully for file: {}", fileName);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch (IOException e) {
+            log.error("IO error while generating batch report: {}", e.getMessage(), e);
+            throw new ReportGenerationException("Error writing report archive to response", e);
+        } catch (Exception e) {
+            log.error("Error generating batch report: {}", e.getMessage(), e);
+            throw ReportGenerationException.forFile(fileName, e);
+        }
+    }
+
+    private static ExportOptions exportOptions(String format, String pages, String profile, String accept) {
+        try {
+            return ExportOptions.of(format, pages, profile, accept);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.exception.BadRequestException;
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import com.example.jaspertable.service.ReportJob;
+import com.example.jaspertable.service.ReportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class ReportJobController {
+
+    private static final String JOB_STATUS_RETRY_AFTER_SECONDS = "2";
+
+    private final ReportJobService reportJobService;
+
+    /**
+     * Queues a report for background generation and returns immediately.
+     *
+     * @param requestBody the data to include in the report
+     * @param fileName    the name of the report file/template to use
+     * @return 202 Accepted with the job status and its polling location
+     */
+    @PostMapping("/generate/report/{file_name}/jobs")
+    public ResponseEntity<ReportJobResponse> submitReportJob(
+            @RequestBody LinkedHashMap<String, List<Map<String, Object>>> requestBody,
+            @PathVariable("file_name") String fileName) {
+
+        log.info("Submitting report job for file: {}", fileName);
+
+        if (requestBody == null || requestBody.isEmpty()) {
+            throw new BadRequestException("Report data cannot be empty");
+        }
+
+        ReportJob job = reportJobService.submit(fileName, requestBody);
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, jobLocation(job.getId()))
+                .body(ReportJobResponse.of(job));
+    }
+
+    /**
+     * Returns the status of a report job, or the generated PDF once the job has completed.
+     *
+     * @param id the job id
+     * @return 202 with the status while the job is pending, 200 with the PDF when it completed,
+     * 503 with a Retry-After header when it was rejected because the service was saturated, or 500
+     * with the status and error when it failed
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getReportJob(@PathVariable("id") String id) {
+        ReportJob job = reportJobService.find(id)
+                .orElseThrow(() -> ResourceNotFoundException.create("Report job", "id", id));
+
+        switch (job.getStatus()) {
+            case COMPLETED:
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_PDF)
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"" + job.getFileName().trim().toLowerCase() + ".pdf\"")
+                        .body(job.getResult());
+            case REJECTED:
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(job.getRetryAfterSeconds()))
+                        .body(ReportJobResponse.of(job));
+            case FAILED:
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ReportJobResponse.of(job));
+            default:
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, JOB_STATUS_RETRY_AFTER_SECONDS)
+                        .body(ReportJobResponse.of(job));
+        }
+    }
+
+    static String jobLocation(String id) {
+        return "/jobs/" + id;
+    }
+}
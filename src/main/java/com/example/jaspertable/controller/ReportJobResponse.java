@@ -0,0 +1,80 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.service.ReportJob;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Status of an asynchronous report job as returned to the client.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReportJobResponse {
+
+    /**
+     * The job id.
+     */
+    private String id;
+
+    /**
+     * The name of the report being generated.
+     */
+    private String fileName;
+
+    /**
+     * The current job status.
+     */
+    private ReportJob.Status status;
+
+    /**
+     * When the job was submitted.
+     */
+    private Instant createdAt;
+
+    /**
+     * When a worker started rendering the job.
+     */
+    private Instant startedAt;
+
+    /**
+     * When the job completed or failed.
+     */
+    private Instant completedAt;
+
+    /**
+     * The error message of a failed job.
+     */
+    private String error;
+
+    /**
+     * Where to poll for the job status and, once completed, the PDF.
+     */
+    private String location;
+
+    /**
+     * Creates the response for the given job.
+     *
+     * @param job the job
+     * @return the job status response
+     */
+    public static ReportJobResponse of(ReportJob job) {
+        return ReportJobResponse.builder()
+                .id(job.getId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .error(job.getError())
+                .location(ReportJobController.jobLocation(job.getId()))
+                .build();
+    }
+}
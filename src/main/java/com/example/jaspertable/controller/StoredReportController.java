@@ -0,0 +1,142 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import com.example.jaspertable.service.DocumentStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Downloads of documents kept by the {@link DocumentStore}. Byte ranges are supported, so that an
+ * interrupted download can be resumed.
+ */
+@RestController
+@RequestMapping("/reports")
+@RequiredArgsConstructor
+@Slf4j
+public class StoredReportController {
+
+    /** Request attributes of Tomcat's sendfile support. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final DocumentStore documentStore;
+
+    /**
+     * Returns a stored document, or the byte range of it named by the {@code Range} header.
+     * <p>
+     * A single range is served with {@code 206 Partial Content}; several ranges, a malformed header,
+     * or an {@code If-Range} that no longer matches get the whole document. The file is handed to
+     * the connector's sendfile where available, and otherwise transferred from its channel.
+     *
+     * @param id       the id from the {@value DocumentStore#ID_HEADER} header of the rendering response
+     * @param request  the HTTP request
+     * @param response the HTTP response to write the document to
+     * @throws IOException if the document cannot be read
+     */
+    @GetMapping("/{id}")
+    public void download(@PathVariable("id") String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        DocumentStore.StoredDocument document = documentStore.isEnabled() ? documentStore.find(id).orElse(null) : null;
+        if (document == null) {
+            throw ResourceNotFoundException.create("Report", "id", id);
+        }
+        long length = document.size();
+        String etag = "\"" + document.id() + "\"";
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + document.fileName() + "\"");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, document.lastModified().toEpochMilli());
+
+        long start = 0;
+        long end = length;
+        HttpRange range = requestedRange(request, etag, document.lastModified());
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length) + 1;
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start >= end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        response.setContentLengthLong(end - start);
+        log.debug("Serving stored report {}, bytes {}-{} of {}", id, start, end - 1, length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, document.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(document.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += file.transferTo(position, end - position, out);
+            }
+        }
+        response.getOutputStream().flush();
+    }
+
+    /**
+     * Returns the single range to serve, or {@code null} to serve the whole document.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag, Instant lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !isCurrent(request, etag, lastModified)) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    /**
+     * Checks the {@code If-Range} precondition, under which a range is only served if the client
+     * still holds the same document.
+     */
+    private static boolean isCurrent(HttpServletRequest request, String etag, Instant lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified.toEpochMilli() / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
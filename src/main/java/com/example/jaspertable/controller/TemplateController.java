@@ -0,0 +1,45 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.exception.ReportGenerationException;
+import com.example.jaspertable.service.TemplateSchema;
+import com.example.jaspertable.service.TemplateSchemaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Describes the report templates, so that clients can check what data a template expects.
+ */
+@RestController
+@RequestMapping("/templates")
+@RequiredArgsConstructor
+@Slf4j
+public class TemplateController {
+
+    private final TemplateSchemaService templateSchemaService;
+
+    /**
+     * Returns the fields a template reads from each row of report data. The response carries the
+     * fingerprint of the template file as its {@code ETag}.
+     *
+     * @param name the template name, as used for the keys of the report data
+     * @return the schema of the template
+     */
+    @GetMapping("/{name}/schema")
+    public ResponseEntity<TemplateSchema> getSchema(@PathVariable("name") String name) {
+        try {
+            TemplateSchema schema = templateSchemaService.schema(name);
+            return ResponseEntity.ok()
+                    .eTag(schema.fingerprint())
+                    .body(schema);
+        } catch (JRException e) {
+            log.error("Failed to load template '{}': {}", name, e.getMessage(), e);
+            throw new ReportGenerationException("Failed to load template: " + name, e);
+        }
+    }
+}
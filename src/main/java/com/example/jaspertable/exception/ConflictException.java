@@ -0,0 +1,18 @@
+package com.example.jaspertable.exception;
+
+/**
+ * Exception thrown when a request conflicts with the current state of a resource.
+ */
+public class ConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new conflict exception with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public ConflictException(String message) {
+        super(message);
+    }
+}
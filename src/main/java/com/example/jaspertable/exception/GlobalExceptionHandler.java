@@ -1,29 +1,37 @@
 package com.example.jaspertable.exception;
 
+import com.example.jaspertable.service.ReportMetrics;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.nio.file.AccessDeniedException;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Global exception handler to provide consistent error responses across the API.
+ * Global exception handler to provide consistent error responses across the API. Every mapped
+ * exception is counted in the {@code report.errors} metric, except requests to unmapped paths.
  */
 @ControllerAdvice
 @Slf4j
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
 
+    private final ReportMetrics reportMetrics;
+
     /**
      * Handles ResourceNotFoundException and returns a 404 Not Found status.
      *
@@ -42,6 +50,8 @@ public class GlobalExceptionHandler {
                 ex.getMessage(), 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.NOT_FOUND.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
 
@@ -63,9 +73,58 @@ public class GlobalExceptionHandler {
                 ex.getMessage(), 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles InvalidPayloadException and returns a 400 Bad Request with the offending values.
+     *
+     * @param ex      the exception
+     * @param request the current request
+     * @return a standardized error response with validation errors
+     */
+    @ExceptionHandler(InvalidPayloadException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPayloadException(
+            InvalidPayloadException ex, HttpServletRequest request) {
+
+        log.warn("Invalid report data: {}", ex.getErrors());
+
+        ErrorResponse errorResponse = ErrorResponse.of(
+                HttpStatus.BAD_REQUEST,
+                "Invalid report data",
+                request.getRequestURI());
+
+        ex.getErrors().forEach(errorResponse::addValidationError);
+
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles ConflictException and returns a 409 Conflict status.
+     *
+     * @param ex      the exception
+     * @param request the current request
+     * @return a standardized error response
+     */
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ErrorResponse> handleConflictException(
+            ConflictException ex, HttpServletRequest request) {
+
+        log.warn("Conflict: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = ErrorResponse.of(
+                HttpStatus.CONFLICT,
+                ex.getMessage(),
+                request.getRequestURI());
+
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.CONFLICT.value());
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
     /**
      * Handles ReportGenerationException and returns a 500 Internal Server Error status.
      *
@@ -84,9 +143,35 @@ public class GlobalExceptionHandler {
                 ex.getMessage(), 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.INTERNAL_SERVER_ERROR.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Handles TooManyRequestsException and returns a 429 Too Many Requests status with a Retry-After header.
+     *
+     * @param ex      the exception
+     * @param request the current request
+     * @return a standardized error response
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(
+            TooManyRequestsException ex, HttpServletRequest request) {
+
+        log.warn("Too many requests: {}", ex.getMessage());
+
+        ErrorResponse errorResponse = ErrorResponse.of(
+                HttpStatus.TOO_MANY_REQUESTS,
+                ex.getMessage(),
+                request.getRequestURI());
+
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.TOO_MANY_REQUESTS.value());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Handles validation exceptions and returns a 400 Bad Request with validation details.
      *
@@ -115,6 +200,8 @@ public class GlobalExceptionHandler {
         
         errors.forEach(errorResponse::addValidationError);
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -139,6 +226,8 @@ public class GlobalExceptionHandler {
                 error, 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -163,6 +252,8 @@ public class GlobalExceptionHandler {
                 error, 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -186,9 +277,56 @@ public class GlobalExceptionHandler {
         
         errorResponse.setDebugMessage(ex.getMessage());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.BAD_REQUEST.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles request bodies in a content type the endpoint does not accept.
+     *
+     * @param ex      the exception
+     * @param request the current request
+     * @return a standardized error response
+     */
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<ErrorResponse> handleHttpMediaTypeNotSupported(
+            HttpMediaTypeNotSupportedException ex, HttpServletRequest request) {
+        
+        log.warn("Unsupported content type: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = ErrorResponse.of(
+                HttpStatus.UNSUPPORTED_MEDIA_TYPE, 
+                "Unsupported content type, expected one of " + ex.getSupportedMediaTypes(), 
+                request.getRequestURI());
+        
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    /**
+     * Handles requests to paths that are not mapped, e.g. actuator endpoints on the application
+     * port, and returns a 404 Not Found status.
+     *
+     * @param ex      the exception
+     * @param request the current request
+     * @return a standardized error response
+     */
+    @ExceptionHandler(NoResourceFoundException.class)
+    public ResponseEntity<ErrorResponse> handleNoResourceFound(
+            NoResourceFoundException ex, HttpServletRequest request) {
+        
+        log.warn("No handler for {} {}", ex.getHttpMethod(), request.getRequestURI());
+        
+        ErrorResponse errorResponse = ErrorResponse.of(
+                HttpStatus.NOT_FOUND, 
+                "Not found", 
+                request.getRequestURI());
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
     /**
      * Handles access denied exceptions.
      *
@@ -207,6 +345,8 @@ public class GlobalExceptionHandler {
                 "Access denied", 
                 request.getRequestURI());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.FORBIDDEN.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.FORBIDDEN);
     }
 
@@ -230,6 +370,8 @@ public class GlobalExceptionHandler {
         
         errorResponse.setDebugMessage(ex.getMessage());
         
+        reportMetrics.recordError(ReportMetrics.requestTemplate(request), ex, HttpStatus.INTERNAL_SERVER_ERROR.value());
+        
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 } 
\ No newline at end of file
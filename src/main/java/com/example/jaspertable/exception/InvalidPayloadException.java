@@ -0,0 +1,46 @@
+package com.example.jaspertable.exception;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Exception thrown when report data does not match the templates it is meant for.
+ */
+public class InvalidPayloadException extends BadRequestException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int ERRORS_IN_MESSAGE = 3;
+
+    private final Map<String, String> errors;
+
+    /**
+     * Constructs a new invalid payload exception listing the offending values.
+     *
+     * @param errors the error messages by location in the data, e.g. {@code results[3].fullName}
+     */
+    public InvalidPayloadException(Map<String, String> errors) {
+        super(message(errors));
+        this.errors = Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+    }
+
+    /**
+     * Returns the error messages by location in the data.
+     *
+     * @return the errors, in the order they were found
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    private static String message(Map<String, String> errors) {
+        String shown = errors.entrySet().stream()
+                .limit(ERRORS_IN_MESSAGE)
+                .map(error -> error.getKey() + ": " + error.getValue())
+                .collect(Collectors.joining("; "));
+        int more = errors.size() - ERRORS_IN_MESSAGE;
+        return "Invalid report data: " + shown + (more > 0 ? "; and " + more + " more" : "");
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders many independent documents from one request and streams them back as a ZIP archive.
+ * <p>
+ * The request body is a JSON array of regular report payloads. Payloads are parsed one at a time
+ * and only {@code jasper.batch.parallelism} documents are parsed, rendering or waiting to be written
+ * at any moment, so memory stays bounded regardless of the batch size. Each PDF is written to the
+ * archive as soon as it is ready, in completion order; entry names carry the position in the batch.
+ * A document that fails is written as a {@code .error.txt} entry instead of aborting the batch.
+ */
+@Service
+@Slf4j
+public class BatchReportService {
+
+    private static final TypeReference<LinkedHashMap<String, List<Map<String, Object>>>> DOCUMENT_TYPE = new TypeReference<>() {
+    };
+
+    private final JReportService jReportService;
+    private final ObjectMapper objectMapper;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public BatchReportService(JReportService jReportService, ObjectMapper objectMapper, ReportProperties properties) {
+        this.jReportService = jReportService;
+        this.objectMapper = objectMapper;
+        this.parallelism = Math.max(1, properties.getBatch().getParallelism());
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "report-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Renders every payload of the batch and writes the documents to the response as a ZIP archive.
+     *
+     * @param file_name the report name, used for the archive and entry names
+     * @param body      the request body, a JSON array of report payloads
+     * @param response  the HTTP response to write the archive to
+     * @throws IllegalArgumentException if the body is malformed or of the wrong shape before the first
+     *                                  document was written
+     * @throws IOException              if the archive cannot be written
+     */
+    public void generateBatch(String file_name, InputStream body, HttpServletResponse response) throws IOException {
+        String baseName = file_name.trim().toLowerCase();
+        log.info("Starting batch report generation for file: '{}' with parallelism {}", file_name, parallelism);
+
+        CompletionService<BatchDocument> completion = new ExecutorCompletionService<>(executor);
+        List<Future<BatchDocument>> pending = new ArrayList<>();
+        ZipOutputStream zip = null;
+        int submitted = 0;
+        int written = 0;
+        int failed = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Batch data must be a JSON array of report payloads");
+            }
+
+            boolean more = true;
+            while (more || !pending.isEmpty()) {
+                while (more && pending.size() < parallelism) {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.END_ARRAY) {
+                        more = false;
+                        break;
+                    }
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(parser, "Batch entries must be report payload objects, got " + token);
+                    }
+                    LinkedHashMap<String, List<Map<String, Object>>> document = objectMapper.readValue(parser, DOCUMENT_TYPE);
+                    int index = ++submitted;
+                    pending.add(completion.submit(() -> render(file_name, index, document)));
+                    log.debug("Submitted batch document {} for file: '{}'", index, file_name);
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                Future<BatchDocument> done = completion.take();
+                pending.remove(done);
+                BatchDocument document = done.get();
+
+                if (zip == null) {
+                    response.setContentType("application/zip");
+                    response.setHeader("Content-Disposition", "attachment; filename=\"" + baseName + ".zip\"");
+                    zip = new ZipOutputStream(response.getOutputStream());
+                }
+                if (document.pdf() != null) {
+                    writeEntry(zip, String.format("%s-%05d.pdf", baseName, document.index()), document.pdf());
+                } else {
+                    failed++;
+                    writeEntry(zip, String.format("%s-%05d.error.txt", baseName, document.index()),
+                            document.error().getBytes(StandardCharsets.UTF_8));
+                }
+                written++;
+            }
+
+            if (submitted == 0) {
+                log.warn("Batch data for file '{}' contained no documents. Throwing IllegalArgumentException.", file_name);
+                throw new IllegalArgumentException("Batch data cannot be empty");
+            }
+            zip.finish();
+            zip.flush();
+            log.info("Batch for file '{}' finished: {} documents written, {} failed", file_name, written, failed);
+
+        } catch (JsonProcessingException e) {
+            // Syntax errors as well as well-formed entries of the wrong shape
+            pending.forEach(future -> future.cancel(true));
+            if (zip != null) {
+                log.error("Malformed batch data for file '{}' after {} documents: {}", file_name, written, e.getOriginalMessage());
+                throw new IOException("Malformed batch data after " + written + " documents", e);
+            }
+            throw new IllegalArgumentException("Malformed JSON request: " + e.getOriginalMessage(), e);
+        } catch (InterruptedException e) {
+            pending.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch report generation was interrupted", e);
+        } catch (ExecutionException e) {
+            pending.forEach(future -> future.cancel(true));
+            throw new IOException("Unexpected error in batch report generation", e.getCause());
+        } catch (IOException | RuntimeException e) {
+            // Most likely the client went away; stop rendering documents nobody will receive
+            pending.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private BatchDocument render(String file_name, int index, LinkedHashMap<String, List<Map<String, Object>>> document) {
+        try {
+            return new BatchDocument(index, jReportService.generatePdf(file_name, document), null);
+        } catch (Exception e) {
+            log.warn("Batch document {} for file '{}' failed: {}", index, file_name, e.getMessage());
+            return new BatchDocument(index, null, describe(e));
+        }
+    }
+
+    private static String describe(Throwable error) {
+        StringBuilder description = new StringBuilder();
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            description.append(cause.getMessage() != null ? cause.getMessage() : cause.toString()).append('\n');
+        }
+        return description.toString();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        // PDFs are already compressed, so store them and skip the deflate CPU cost
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+        zip.flush();
+    }
+
+    private record BatchDocument(int index, byte[] pdf, String error) {
+    }
+}
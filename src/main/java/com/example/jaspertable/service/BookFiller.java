@@ -0,0 +1,100 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills the parts of a document in parallel, for "book mode" where every template group of a
+ * request becomes its own {@link JasperPrint} and the prints are exported one after another.
+ * <p>
+ * The first part is filled on the calling thread and the others on a shared pool of
+ * {@code jasper.book.parallelism} threads, so a request never waits for a pool thread to start its
+ * first part.
+ */
+@Component
+@Slf4j
+public class BookFiller {
+
+    private final ReportProperties.Book properties;
+    private final ExecutorService executor;
+
+    public BookFiller(ReportProperties properties) {
+        this.properties = properties.getBook();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, this.properties.getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "report-fill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns whether documents with several parts should be filled in parallel.
+     *
+     * @return {@code true} if book mode is enabled
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Fills all parts and returns the prints in the order of the parts.
+     *
+     * @param parts the fills of the individual parts
+     * @return the filled parts
+     * @throws JRException if any part fails; the remaining parts are cancelled
+     */
+    public List<JasperPrint> fill(List<Callable<JasperPrint>> parts) throws JRException {
+        List<Future<JasperPrint>> futures = new ArrayList<>();
+        try {
+            for (Callable<JasperPrint> part : parts.subList(1, parts.size())) {
+                futures.add(executor.submit(part));
+            }
+            List<JasperPrint> prints = new ArrayList<>(parts.size());
+            prints.add(parts.get(0).call());
+            for (Future<JasperPrint> future : futures) {
+                prints.add(future.get());
+            }
+            return prints;
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw asJRException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new JRException("Interrupted while filling report parts", e);
+        } catch (Exception e) {
+            futures.forEach(future -> future.cancel(true));
+            throw asJRException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static JRException asJRException(Throwable cause) {
+        if (cause instanceof JRException) {
+            return (JRException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new JRException("Failed to fill report part", cause);
+    }
+}
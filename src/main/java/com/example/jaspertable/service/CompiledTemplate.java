@@ -0,0 +1,28 @@
+package com.example.jaspertable.service;
+
+import net.sf.jasperreports.engine.JasperReport;
+
+/**
+ * A compiled template as held by the {@link TemplateRegistry}.
+ * <p>
+ * Instances are immutable: a reload produces a new instance that replaces the old one in the
+ * registry, while fills that already resolved the old instance keep using it.
+ *
+ * @param name        the normalized template name
+ * @param report      the compiled report
+ * @param source      where the template was loaded from
+ * @param version     a process-wide monotonically increasing version, changes on every reload
+ * @param fingerprint the hex SHA-256 of the template file the report was loaded from; unlike the
+ *                    version it is the same in every process serving the same template
+ */
+public record CompiledTemplate(String name, JasperReport report, Source source, long version, String fingerprint) {
+
+    public enum Source {
+        /** A {@code .jasper} produced by the build and packaged on the classpath. */
+        PRECOMPILED,
+        /** A classpath {@code .jrxml} compiled at runtime because no {@code .jasper} was found. */
+        CLASSPATH,
+        /** A {@code .jrxml} from the external template directory. */
+        EXTERNAL
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps rendered PDFs on local disk, so that a client can download a document again, or resume an
+ * interrupted download, without rendering it a second time.
+ * <p>
+ * Every document is stored as {@code <dir>/<id>/<name>.pdf}, where the id is a UUID that is returned
+ * to the client in the {@value #ID_HEADER} header. Documents of the output cache get an id derived
+ * from their cache key, so that every response for the same document shares one stored copy. A
+ * document is written to a temporary file first and only becomes visible once it is complete.
+ * Documents older than {@code jasper.store.ttl} are no longer served and are deleted periodically.
+ */
+@Component
+@Slf4j
+public class DocumentStore {
+
+    /** Response header carrying the id of the stored document. */
+    public static final String ID_HEADER = "X-Report-Id";
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final String EXTENSION = ".pdf";
+    private static final String TEMP_PREFIX = ".";
+
+    private final ReportProperties.Store properties;
+    private final Path root;
+
+    public DocumentStore(ReportProperties properties) {
+        this.properties = properties.getStore();
+        this.root = StringUtils.hasText(this.properties.getDir())
+                ? Paths.get(this.properties.getDir())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "report-store");
+    }
+
+    /**
+     * A document in the store.
+     *
+     * @param id           the document id
+     * @param path         the PDF file
+     * @param fileName     the file name to offer for download
+     * @param size         the size in bytes
+     * @param lastModified when the document was stored
+     */
+    public record StoredDocument(String id, Path path, String fileName, long size, Instant lastModified) {
+    }
+
+    /**
+     * Returns whether rendered documents are stored.
+     *
+     * @return {@code true} if the store is enabled
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Creates the id of a document that is about to be rendered.
+     *
+     * @return a new id
+     */
+    public String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns the id of a document of the output cache, the same for every rendering of it.
+     *
+     * @param cacheKey the key of the document in the output cache
+     * @return the id
+     */
+    public String idFor(String cacheKey) {
+        return UUID.nameUUIDFromBytes(cacheKey.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Starts writing a document. The document is only stored once {@link Draft#commit()} is called;
+     * closing an uncommitted draft discards it.
+     *
+     * @param id        the id from {@link #newId()}
+     * @param file_name the name of the report
+     * @return the draft to write the document to
+     * @throws IOException if the file cannot be created
+     */
+    public Draft create(String id, String file_name) throws IOException {
+        Path directory = root.resolve(checkId(id));
+        Files.createDirectories(directory);
+        String fileName = fileName(file_name);
+        Path temp = Files.createTempFile(directory, TEMP_PREFIX + fileName, ".tmp");
+        return new Draft(directory, temp, directory.resolve(fileName), Files.newOutputStream(temp));
+    }
+
+    /**
+     * Stores a document that was rendered into memory. If a document with the id is already stored,
+     * its TTL starts over instead.
+     *
+     * @param id        the id from {@link #newId()} or {@link #idFor(String)}
+     * @param file_name the name of the report
+     * @param pdf       the document
+     * @return {@code true} if the document is stored, {@code false} if it could not be written
+     */
+    public boolean save(String id, String file_name, byte[] pdf) {
+        try {
+            Optional<StoredDocument> stored = find(id);
+            if (stored.isPresent()) {
+                FileTime now = FileTime.from(Instant.now());
+                Files.setLastModifiedTime(stored.get().path(), now);
+                Files.setLastModifiedTime(stored.get().path().getParent(), now);
+                return true;
+            }
+            try (Draft draft = create(id, file_name)) {
+                draft.out().write(pdf);
+                draft.commit();
+            }
+            return true;
+        } catch (IOException e) {
+            // The document is still sent to the client, so a failed store only costs the re-download
+            log.warn("Failed to store report {}: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Looks up a stored document.
+     *
+     * @param id the document id
+     * @return the document, or empty if the id is unknown, malformed or expired
+     * @throws IOException if the store cannot be read
+     */
+    public Optional<StoredDocument> find(String id) throws IOException {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Path directory = root.resolve(id);
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "[!.]*" + EXTENSION)) {
+            for (Path file : files) {
+                Instant lastModified = Files.getLastModifiedTime(file).toInstant();
+                if (isExpired(lastModified)) {
+                    return Optional.empty();
+                }
+                return Optional.of(new StoredDocument(id, file, file.getFileName().toString(), Files.size(file),
+                        lastModified));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes documents whose TTL has passed, and drafts abandoned for as long.
+     */
+    @Scheduled(fixedDelayString = "${jasper.store.cleanup-interval:PT5M}")
+    public void deleteExpired() {
+        if (!isEnabled() || !Files.isDirectory(root)) {
+            return;
+        }
+        int deleted = 0;
+        try (Stream<Path> directories = Files.list(root)) {
+            for (Path directory : (Iterable<Path>) directories::iterator) {
+                if (ID_PATTERN.matcher(directory.getFileName().toString()).matches()
+                        && isExpired(Files.getLastModifiedTime(directory).toInstant())) {
+                    FileSystemUtils.deleteRecursively(directory);
+                    deleted++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to clean up the report store {}: {}", root, e.getMessage());
+        }
+        if (deleted > 0) {
+            log.debug("Deleted {} expired stored reports", deleted);
+        }
+    }
+
+    private boolean isExpired(Instant lastModified) {
+        return lastModified.isBefore(Instant.now().minus(properties.getTtl()));
+    }
+
+    private static String checkId(String id) {
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid document id: " + id);
+        }
+        return id;
+    }
+
+    private static String fileName(String file_name) {
+        String name = file_name.trim().toLowerCase().replaceAll("[^\\p{L}\\p{N}._-]", "_");
+        return (name.isEmpty() || name.startsWith(TEMP_PREFIX) ? "report" + name : name) + EXTENSION;
+    }
+
+    /**
+     * A document being written to the store.
+     */
+    public static final class Draft implements Closeable {
+
+        private final Path directory;
+        private final Path temp;
+        private final Path target;
+        private final OutputStream out;
+        private boolean committed;
+
+        private Draft(Path directory, Path temp, Path target, OutputStream out) {
+            this.directory = directory;
+            this.temp = temp;
+            this.target = target;
+            this.out = out;
+        }
+
+        /**
+         * @return the stream to write the document to
+         */
+        public OutputStream out() {
+            return out;
+        }
+
+        /**
+         * Makes the written document available for download.
+         *
+         * @throws IOException if the document cannot be moved into place
+         */
+        public void commit() throws IOException {
+            out.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            out.close();
+            Files.deleteIfExists(temp);
+            try {
+                Files.deleteIfExists(directory);
+            } catch (DirectoryNotEmptyException e) {
+                // Another draft of the same document
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.jaspertable.service;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Output formats a filled report can be exported to.
+ */
+public enum ExportFormat {
+
+    PDF("pdf", MediaType.APPLICATION_PDF, false),
+    DOCX("docx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"), false),
+    XLSX("xlsx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"), false),
+    HTML("html", MediaType.TEXT_HTML, true),
+    PNG("png", MediaType.IMAGE_PNG, true);
+
+    private final String extension;
+    private final MediaType mediaType;
+    private final boolean inline;
+
+    ExportFormat(String extension, MediaType mediaType, boolean inline) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+        this.inline = inline;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Returns whether the format is meant for previews shown in the browser rather than downloads.
+     *
+     * @return {@code true} for {@code inline} content disposition
+     */
+    public boolean isInline() {
+        return inline;
+    }
+
+    /**
+     * Chooses the format from the {@code format} query parameter, or from the {@code Accept} header
+     * if the parameter is absent. Defaults to PDF.
+     *
+     * @param format the format name, e.g. {@code docx}, may be {@code null}
+     * @param accept the {@code Accept} header, may be {@code null}
+     * @return the chosen format
+     * @throws IllegalArgumentException if the format name is unknown
+     */
+    public static ExportFormat negotiate(String format, String accept) {
+        if (StringUtils.hasText(format)) {
+            for (ExportFormat candidate : values()) {
+                if (candidate.extension.equalsIgnoreCase(format.trim())) {
+                    return candidate;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        if (!StringUtils.hasText(accept)) {
+            return PDF;
+        }
+
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return PDF;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : accepted) {
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+                break;
+            }
+            for (ExportFormat candidate : values()) {
+                if (candidate.mediaType.isCompatibleWith(mediaType)) {
+                    return candidate;
+                }
+            }
+        }
+        return PDF;
+    }
+}
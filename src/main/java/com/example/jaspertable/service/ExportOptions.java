@@ -0,0 +1,96 @@
+package com.example.jaspertable.service;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * What to export from a filled report: the output format, the pages to include and, for PDF, the
+ * size profile.
+ *
+ * @param format    the output format
+ * @param firstPage the first page to export, 1-based
+ * @param lastPage  the last page to export, 1-based and inclusive, {@link Integer#MAX_VALUE} for the
+ *                  end of the document
+ * @param profile   the PDF profile, {@code null} for the profile configured for the report, see
+ *                  {@link ReportExporter#resolveProfile}
+ */
+public record ExportOptions(ExportFormat format, int firstPage, int lastPage, PdfProfile profile) {
+
+    /** The whole document as PDF, with the profile configured for the report. */
+    public static final ExportOptions DEFAULT = new ExportOptions(ExportFormat.PDF, 1, Integer.MAX_VALUE, null);
+
+    /**
+     * Parses export options from request parameters.
+     *
+     * @param format  the {@code format} query parameter, may be {@code null}
+     * @param pages   the {@code pages} query parameter, e.g. {@code 2}, {@code 1-3} or {@code 4-}, may be {@code null}
+     * @param profile the {@code profile} query parameter, e.g. {@code smallest}, may be {@code null}
+     * @param accept  the {@code Accept} header, may be {@code null}
+     * @return the options; PNG exports a single page, the first of the range
+     * @throws IllegalArgumentException if the format or profile is unknown or the page range is malformed
+     */
+    public static ExportOptions of(String format, String pages, String profile, String accept) {
+        ExportFormat exportFormat = ExportFormat.negotiate(format, accept);
+        int first = 1;
+        int last = Integer.MAX_VALUE;
+        if (StringUtils.hasText(pages)) {
+            String range = pages.trim();
+            int dash = range.indexOf('-');
+            try {
+                if (dash < 0) {
+                    first = Integer.parseInt(range);
+                    last = first;
+                } else {
+                    first = Integer.parseInt(range.substring(0, dash).trim());
+                    String end = range.substring(dash + 1).trim();
+                    last = end.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(end);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed page range: " + pages);
+            }
+            if (first < 1 || last < first) {
+                throw new IllegalArgumentException("Malformed page range: " + pages);
+            }
+        }
+        if (exportFormat == ExportFormat.PNG) {
+            last = first;
+        }
+        return new ExportOptions(exportFormat, first, last, PdfProfile.of(profile));
+    }
+
+    /**
+     * Returns these options with another PDF profile.
+     *
+     * @param profile the PDF profile
+     * @return the options with the profile
+     */
+    public ExportOptions withProfile(PdfProfile profile) {
+        return new ExportOptions(format, firstPage, lastPage, profile);
+    }
+
+    /**
+     * Returns whether these are the default options, i.e. the whole document as PDF, in any profile.
+     *
+     * @return {@code true} for the default options
+     */
+    public boolean isDefault() {
+        return format == ExportFormat.PDF && isWholeDocument();
+    }
+
+    /**
+     * Returns whether only a leading part of the document is needed, so that the fill can stop early.
+     *
+     * @return {@code true} if the last page is bounded
+     */
+    public boolean isBounded() {
+        return lastPage != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether every page is exported, so that the document may be filled in several parts.
+     *
+     * @return {@code true} if no page range is applied
+     */
+    public boolean isWholeDocument() {
+        return firstPage == 1 && !isBounded();
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches the external template directory and keeps the {@link TemplateRegistry} in sync with it.
+ * <p>
+ * Changed {@code .jrxml} files are recompiled on a background thread and swapped into the registry
+ * only once compilation succeeded, so requests never wait on a recompile and keep the previous
+ * version if the new one is broken. Deleted files are evicted so the packaged template is used again.
+ * A request that needs an external template before it was compiled gets the packaged version while
+ * the compilation is scheduled here.
+ */
+@Component
+@Slf4j
+public class ExternalTemplateWatcher {
+
+    private static final String TEMPLATE_EXTENSION = ".jrxml";
+
+    private final TemplateRegistry templateRegistry;
+    private final ReportProperties.Templates properties;
+    private final Set<String> pendingReloads = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService compiler;
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public ExternalTemplateWatcher(TemplateRegistry templateRegistry, ReportProperties properties) {
+        this.templateRegistry = templateRegistry;
+        this.properties = properties.getTemplates();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!StringUtils.hasText(properties.getExternalDir())) {
+            log.info("No external template directory configured, using packaged templates only.");
+            return;
+        }
+        Path directory = Paths.get(properties.getExternalDir());
+        if (!Files.isDirectory(directory)) {
+            log.warn("External template directory '{}' does not exist, using packaged templates only.", directory);
+            return;
+        }
+
+        compiler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "template-compiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        watcherThread = new Thread(() -> watch(directory), "template-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Watching external template directory '{}'", directory);
+
+        templateRegistry.setExternalCompiler(templateName ->
+                scheduleReload(templateName, directory.resolve(templateName + TEMPLATE_EXTENSION)));
+        scheduleAll(directory);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        templateRegistry.setExternalCompiler(null);
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (compiler != null) {
+            compiler.shutdownNow();
+        }
+    }
+
+    private void watch(Path directory) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                log.debug("Template watcher stopped.");
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.warn("Template watcher overflowed, rescanning '{}'", directory);
+                    scheduleAll(directory);
+                    continue;
+                }
+                Path file = directory.resolve((Path) event.context());
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(TEMPLATE_EXTENSION)) {
+                    continue;
+                }
+                String templateName = fileName.substring(0, fileName.length() - TEMPLATE_EXTENSION.length());
+                log.debug("Template change detected: {} {}", event.kind().name(), file);
+                scheduleReload(templateName, file);
+            }
+
+            if (!key.reset()) {
+                log.warn("External template directory '{}' is no longer accessible, stopped watching.", directory);
+                return;
+            }
+        }
+    }
+
+    private void scheduleAll(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(TEMPLATE_EXTENSION))
+                    .forEach(file -> {
+                        String fileName = file.getFileName().toString();
+                        scheduleReload(fileName.substring(0, fileName.length() - TEMPLATE_EXTENSION.length()), file);
+                    });
+        } catch (IOException e) {
+            log.error("Failed to list external template directory '{}': {}", directory, e.getMessage(), e);
+        }
+    }
+
+    private void scheduleReload(String templateName, Path file) {
+        // Coalesce the burst of events an editor produces into a single compilation
+        if (pendingReloads.add(templateName)) {
+            compiler.schedule(() -> reload(templateName, file),
+                    properties.getReloadDelay().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reload(String templateName, Path file) {
+        pendingReloads.remove(templateName);
+        byte[] source;
+        try {
+            source = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            templateRegistry.evict(templateName);
+            return;
+        } catch (IOException e) {
+            log.error("Failed to read external template '{}': {}", file, e.getMessage(), e);
+            return;
+        }
+
+        try {
+            JasperReport report = templateRegistry.compile(templateName, source);
+            templateRegistry.replace(templateName, report, CompiledTemplate.Source.EXTERNAL, source);
+        } catch (JRException e) {
+            log.error("Failed to compile external template '{}', keeping the previous version: {}", file, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while reloading external template '{}': {}", file, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.exception.ConflictException;
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Java Flight Recorder sessions as the {@code jfr} actuator endpoint, served on the management
+ * port only, which is not published or proxied:
+ * <ul>
+ *     <li>{@code GET /actuator/jfr} returns the status of the current recording,</li>
+ *     <li>{@code POST /actuator/jfr} with a JSON body such as {@code {"duration": "2m", "settings": "profile"}}
+ *     starts a recording,</li>
+ *     <li>{@code DELETE /actuator/jfr} stops the recording and returns it as a {@code .jfr} file,
+ *     to be opened with JDK Mission Control or {@code jfr print}.</li>
+ * </ul>
+ * Every operation answers 404 unless {@code jasper.jfr.enabled} is set.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@RequiredArgsConstructor
+@Slf4j
+public class FlightRecorderEndpoint {
+
+    private final FlightRecorderService flightRecorderService;
+
+    @ReadOperation
+    public WebEndpointResponse<Map<String, Object>> status() {
+        return respond(flightRecorderService::status);
+    }
+
+    /**
+     * Starts a recording.
+     *
+     * @param duration the length of the recording, e.g. {@code 90s} or {@code 2m}; optional
+     * @param settings the JFR settings, {@code default} or {@code profile}; optional
+     * @return the status of the recording
+     */
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> start(@Nullable String duration, @Nullable String settings) {
+        return respond(() -> flightRecorderService.start(parseDuration(duration), settings));
+    }
+
+    /**
+     * Stops the recording and returns it. The temporary file is deleted once it has been sent.
+     *
+     * @return the recording, or 404 without a body if recordings are disabled or none was started
+     * @throws IOException if the recording cannot be written
+     */
+    @DeleteOperation
+    public WebEndpointResponse<Resource> stop() throws IOException {
+        Path file;
+        try {
+            file = flightRecorderService.stop();
+        } catch (ResourceNotFoundException e) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(new FileSystemResource(file) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                };
+            }
+        });
+    }
+
+    private static Duration parseDuration(String duration) {
+        if (!StringUtils.hasText(duration)) {
+            return null;
+        }
+        try {
+            return DurationStyle.detectAndParse(duration.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid duration: " + duration, e);
+        }
+    }
+
+    private static WebEndpointResponse<Map<String, Object>> respond(Supplier<Map<String, Object>> operation) {
+        try {
+            return new WebEndpointResponse<>(operation.get());
+        } catch (IllegalArgumentException e) {
+            return error(WebEndpointResponse.STATUS_BAD_REQUEST, e);
+        } catch (ResourceNotFoundException e) {
+            return error(WebEndpointResponse.STATUS_NOT_FOUND, e);
+        } catch (ConflictException e) {
+            return error(409, e);
+        }
+    }
+
+    private static WebEndpointResponse<Map<String, Object>> error(int status, RuntimeException e) {
+        log.warn("JFR operation failed: {}", e.getMessage());
+        return new WebEndpointResponse<>(Map.of("message", e.getMessage()), status);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.ConflictException;
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts and stops Java Flight Recorder sessions on a live instance, so that a slow template can
+ * be profiled in production without attaching tools.
+ * <p>
+ * At most one recording runs at a time. Its length is capped by {@code jasper.jfr.max-duration}
+ * and its size on disk by {@code jasper.jfr.max-size}; a recording that reaches its length stops
+ * by itself and is kept until it is collected with {@link #stop()}.
+ */
+@Service
+@Slf4j
+public class FlightRecorderService {
+
+    private final ReportProperties.Jfr properties;
+
+    private Recording recording;
+
+    public FlightRecorderService(ReportProperties properties) {
+        this.properties = properties.getJfr();
+    }
+
+    /**
+     * Starts a recording.
+     *
+     * @param duration the length of the recording, or {@code null} for {@code jasper.jfr.default-duration};
+     *                 capped by {@code jasper.jfr.max-duration}
+     * @param settings the JFR settings, {@code default} or {@code profile}, or {@code null} for {@code jasper.jfr.settings}
+     * @return the status of the new recording
+     * @throws ResourceNotFoundException if recordings are disabled
+     * @throws ConflictException         if a recording has already been started and not collected
+     * @throws IllegalArgumentException  if the settings or the duration are invalid
+     */
+    public synchronized Map<String, Object> start(Duration duration, String settings) {
+        checkEnabled();
+        if (recording != null) {
+            throw new ConflictException("A recording was already started at " + recording.getStartTime()
+                    + "; stop it before starting another one");
+        }
+        Duration length = duration != null ? duration : properties.getDefaultDuration();
+        if (length.isNegative() || length.isZero()) {
+            throw new IllegalArgumentException("Recording duration must be positive: " + length);
+        }
+        if (length.compareTo(properties.getMaxDuration()) > 0) {
+            length = properties.getMaxDuration();
+        }
+        String settingsName = StringUtils.hasText(settings) ? settings.trim() : properties.getSettings();
+
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settingsName);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings: " + settingsName, e);
+        }
+
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("report-service");
+        newRecording.setToDisk(true);
+        newRecording.setMaxSize(properties.getMaxSize().toBytes());
+        newRecording.setDuration(length);
+        newRecording.start();
+        recording = newRecording;
+        log.info("Started JFR recording with '{}' settings for {}", settingsName, length);
+        return status();
+    }
+
+    /**
+     * Stops the recording if it is still running and writes it to a temporary file. The recording
+     * is discarded afterwards, so that a new one can be started.
+     *
+     * @return the {@code .jfr} file; the caller deletes it
+     * @throws ResourceNotFoundException if recordings are disabled or none was started
+     * @throws IOException               if the recording cannot be written
+     */
+    public synchronized Path stop() throws IOException {
+        checkEnabled();
+        if (recording == null) {
+            throw new ResourceNotFoundException("No JFR recording was started");
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.DELAYED) {
+                recording.stop();
+            }
+            Path file = Files.createTempFile("report-service-", ".jfr");
+            recording.dump(file);
+            log.info("Stopped JFR recording, {} bytes written to {}", Files.size(file), file);
+            return file;
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * Returns the state of the current recording.
+     *
+     * @return the state, start time and length of the recording, or only the state {@code NONE}
+     */
+    public synchronized Map<String, Object> status() {
+        checkEnabled();
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        Instant startTime = recording.getStartTime();
+        status.put("state", recording.getState().name());
+        status.put("startTime", startTime);
+        status.put("duration", recording.getDuration());
+        status.put("maxSize", recording.getMaxSize());
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private void checkEnabled() {
+        if (!properties.isEnabled()) {
+            throw new ResourceNotFoundException("JFR recordings are disabled");
+        }
+    }
+}
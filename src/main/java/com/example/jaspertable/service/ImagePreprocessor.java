@@ -0,0 +1,341 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRExpression;
+import net.sf.jasperreports.engine.JRExpressionChunk;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRImage;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRElementsVisitor;
+import net.sf.jasperreports.engine.util.JRVisitorSupport;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes base64 image fields of a row once before the fill, instead of in every image expression.
+ * <p>
+ * The image fields of a template are the fields referenced by its image expressions. Their values,
+ * base64 text or raw bytes from a binary or multipart request, are decoded, downscaled to what the largest image element showing them can display at
+ * {@code jasper.images.dpi} and recompressed. Results are kept in a size-bounded cache keyed by the
+ * hash of the encoded image, so a photo repeated across rows or requests is processed once and the
+ * fill receives the same byte array, which JasperReports then embeds only once per document.
+ * <p>
+ * Fields declared as {@code java.lang.String} receive the processed image as a data URI again, so
+ * templates that decode the value themselves keep working; any other field type receives the
+ * image bytes.
+ * <p>
+ * How much work is spent depends on the {@link PdfProfile}: {@code fast} only decodes images,
+ * {@code balanced} applies the settings above and {@code smallest} downscales to
+ * {@code jasper.pdf.smallest-image-dpi} and recompresses every opaque image with
+ * {@code jasper.pdf.smallest-jpeg-quality}, keeping the original whenever it is smaller.
+ */
+@Component
+@Slf4j
+public class ImagePreprocessor {
+
+    private static final Pattern DATA_URI_PREFIX = Pattern.compile("^data:image/[^;]+;base64,");
+    private static final double POINTS_PER_INCH = 72.0;
+
+    private final ReportProperties.Images properties;
+    private final ReportProperties.Pdf pdfProperties;
+    private final ReportMetrics reportMetrics;
+    private final Cache<String, PreparedImage> cache;
+    private final Map<JasperReport, Map<String, ImageSlot>> slotsByReport = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public ImagePreprocessor(ReportProperties properties, ReportMetrics reportMetrics) {
+        this.properties = properties.getImages();
+        this.pdfProperties = properties.getPdf();
+        this.reportMetrics = reportMetrics;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(this.properties.getCacheSize().toBytes())
+                .<String, PreparedImage>weigher((key, image) -> image.data().length)
+                .build();
+    }
+
+    /**
+     * Replaces the encoded images of a row with prepared ones.
+     *
+     * @param templateName the name of the template, for metrics
+     * @param report       the template the row is filled into
+     * @param row          the row as received
+     * @param profile      the PDF profile the document is exported with
+     * @return the row with prepared images, or the same row if the template has no image fields
+     */
+    public Map<String, Object> prepare(String templateName, JasperReport report, Map<String, Object> row,
+                                       PdfProfile profile) {
+        Map<String, ImageSlot> slots = slotsByReport.computeIfAbsent(report, ImagePreprocessor::findSlots);
+        if (slots.isEmpty() || row == null) {
+            return row;
+        }
+
+        // Images are only worth processing if they may end up smaller
+        boolean process = properties.isEnabled() && profile != PdfProfile.FAST;
+        Map<String, Object> prepared = null;
+        for (ImageSlot slot : slots.values()) {
+            Object value = row.get(slot.field());
+            PreparedImage image;
+            if (value instanceof String encoded && !encoded.isEmpty()) {
+                reportMetrics.recordImageBytes(templateName, encoded.length());
+                if (slot.stringTyped() && !process) {
+                    continue;
+                }
+                image = properties.isEnabled() ? cachedImage(hash(encoded), () -> decode(encoded), slot, profile) : decode(encoded);
+            } else if (value instanceof byte[] raw && raw.length > 0) {
+                reportMetrics.recordImageBytes(templateName, raw.length);
+                if (!slot.stringTyped() && !process) {
+                    continue;
+                }
+                image = properties.isEnabled() ? cachedImage(hash(raw), () -> wrap(raw), slot, profile) : wrap(raw);
+            } else {
+                continue;
+            }
+            if (image == null) {
+                continue;
+            }
+            if (prepared == null) {
+                prepared = new HashMap<>(row);
+            }
+            prepared.put(slot.field(), slot.stringTyped() ? image.dataUri() : image.data());
+        }
+        return prepared != null ? prepared : row;
+    }
+
+    /**
+     * Returns the image fields of a template, i.e. the fields whose encoded images are prepared.
+     *
+     * @param report the template
+     * @return the names of the fields referenced by its image expressions
+     */
+    public Set<String> imageFields(JasperReport report) {
+        return Collections.unmodifiableSet(slotsByReport.computeIfAbsent(report, ImagePreprocessor::findSlots).keySet());
+    }
+
+    private PreparedImage cachedImage(String hash, Supplier<PreparedImage> decoder, ImageSlot slot, PdfProfile profile) {
+        boolean smallest = profile == PdfProfile.SMALLEST;
+        int dpi = smallest ? pdfProperties.getSmallestImageDpi() : properties.getDpi();
+        float quality = smallest ? pdfProperties.getSmallestJpegQuality() : properties.getJpegQuality();
+        int targetWidth = (int) Math.ceil(slot.width() / POINTS_PER_INCH * dpi);
+        int targetHeight = (int) Math.ceil(slot.height() / POINTS_PER_INCH * dpi);
+        // The fast profile only shares the decoded image between rows
+        String key = profile == PdfProfile.FAST ? hash : hash + '@' + targetWidth + 'x' + targetHeight + 'q' + quality;
+        PreparedImage cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        PreparedImage decoded = decoder.get();
+        if (decoded == null) {
+            return null;
+        }
+        PreparedImage image = profile == PdfProfile.FAST ? decoded
+                : downscale(decoded, targetWidth, targetHeight, quality, smallest);
+        // Racing requests may both process the same image; keep whichever was stored first
+        return cache.asMap().computeIfAbsent(key, ignored -> image);
+    }
+
+    private static PreparedImage decode(String encoded) {
+        try {
+            byte[] data = Base64.getDecoder().decode(DATA_URI_PREFIX.matcher(encoded).replaceFirst(""));
+            return new PreparedImage(data, mimeType(encoded));
+        } catch (IllegalArgumentException e) {
+            log.warn("Image field value is not valid base64, passing it through: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static PreparedImage wrap(byte[] raw) {
+        String mimeType = null;
+        try {
+            mimeType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(raw));
+        } catch (IOException e) {
+            // Not possible for an in-memory stream
+        }
+        return new PreparedImage(raw, mimeType != null ? mimeType : "image/jpeg");
+    }
+
+    private PreparedImage downscale(PreparedImage original, int targetWidth, int targetHeight, float quality,
+                                    boolean recompress) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(original.data()));
+            if (source == null) {
+                return original;
+            }
+            double scale = Math.max((double) targetWidth / source.getWidth(), (double) targetHeight / source.getHeight());
+            boolean alpha = source.getColorModel().hasAlpha();
+            if (scale >= 1.0 && (!recompress || alpha)) {
+                return original;
+            }
+
+            BufferedImage scaled = scale >= 1.0 ? opaque(source)
+                    : resize(source, Math.max(1, (int) Math.round(source.getWidth() * scale)),
+                    Math.max(1, (int) Math.round(source.getHeight() * scale)), alpha);
+            PreparedImage result = alpha
+                    ? new PreparedImage(encodePng(scaled), "image/png")
+                    : new PreparedImage(encodeJpeg(scaled, quality), "image/jpeg");
+            if (result.data().length >= original.data().length) {
+                return original;
+            }
+            log.debug("Recompressed image from {}x{} ({} bytes) to {}x{} ({} bytes) in {} ms",
+                    source.getWidth(), source.getHeight(), original.data().length, scaled.getWidth(), scaled.getHeight(),
+                    result.data().length, (System.nanoTime() - start) / 1_000_000);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to downscale image, using it as is: {}", e.getMessage());
+            return original;
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height, boolean alpha) {
+        // Halve in steps first; a single bilinear pass over a large reduction drops too many pixels
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static BufferedImage opaque(BufferedImage source) {
+        // The JPEG writer only accepts images without alpha in a plain RGB or gray layout
+        if (source.getType() == BufferedImage.TYPE_INT_RGB || source.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || source.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return source;
+        }
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = copy.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, ImageSlot> findSlots(JasperReport report) {
+        Map<String, JRField> fields = new HashMap<>();
+        if (report.getFields() != null) {
+            for (JRField field : report.getFields()) {
+                fields.put(field.getName(), field);
+            }
+        }
+
+        Map<String, ImageSlot> slots = new HashMap<>();
+        JRElementsVisitor.visitReport(report, new JRVisitorSupport() {
+            @Override
+            public void visitImage(JRImage image) {
+                JRExpression expression = image.getExpression();
+                if (expression == null || expression.getChunks() == null) {
+                    return;
+                }
+                for (JRExpressionChunk chunk : expression.getChunks()) {
+                    JRField field = chunk.getType() == JRExpressionChunk.TYPE_FIELD ? fields.get(chunk.getText()) : null;
+                    if (field == null) {
+                        continue;
+                    }
+                    ImageSlot slot = new ImageSlot(field.getName(), String.class.equals(field.getValueClass()),
+                            image.getWidth(), image.getHeight());
+                    slots.merge(field.getName(), slot, ImageSlot::max);
+                }
+            }
+        });
+        if (!slots.isEmpty()) {
+            log.debug("Image fields of template '{}': {}", report.getName(), slots.values());
+        }
+        return slots;
+    }
+
+    private static String mimeType(String encoded) {
+        int end = encoded.indexOf(';');
+        return encoded.startsWith("data:") && end > 5 ? encoded.substring(5, end) : "image/jpeg";
+    }
+
+    private static String hash(String encoded) {
+        return hash(encoded.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * An image field of a template and the size of the largest element displaying it, in points.
+     */
+    private record ImageSlot(String field, boolean stringTyped, int width, int height) {
+
+        ImageSlot max(ImageSlot other) {
+            return new ImageSlot(field, stringTyped, Math.max(width, other.width), Math.max(height, other.height));
+        }
+    }
+
+    private record PreparedImage(byte[] data, String mimeType) {
+
+        String dataUri() {
+            return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(data);
+        }
+    }
+}
@@ -1,16 +1,36 @@
 package com.example.jaspertable.service;
 
+import com.example.jaspertable.exception.InvalidPayloadException;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import com.example.jaspertable.service.datasource.ColumnLayout;
+import com.example.jaspertable.service.datasource.ColumnarTable;
+import com.example.jaspertable.service.datasource.JsonStreamSectionDataSource;
+import com.example.jaspertable.service.datasource.ListSectionDataSource;
+import com.example.jaspertable.service.datasource.SectionDataSource;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import net.sf.jasperreports.engine.*;
-import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
+import net.sf.jasperreports.engine.fill.FillListener;
+import net.sf.jasperreports.engine.fill.JRFiller;
+import net.sf.jasperreports.engine.fill.ReportFiller;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger; // Import Logger
 import org.slf4j.LoggerFactory; // Import LoggerFactory
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType; // For setting content type
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException; // Be more specific with exceptions
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JReportService {
@@ -18,7 +38,252 @@ public class JReportService {
     // Initialize Logger for this class
     private static final Logger log = LoggerFactory.getLogger(JReportService.class);
 
-    public void automated(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, HttpServletResponse response) throws IOException {
+    private final TemplateRegistry templateRegistry;
+    private final TemplateBulkhead templateBulkhead;
+    private final PriorityScheduler priorityScheduler;
+    private final ReportVirtualizer reportVirtualizer;
+    private final ReportOutputCache reportOutputCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private final ReportExporter reportExporter;
+    private final BookFiller bookFiller;
+    private final ProgressiveFiller progressiveFiller;
+    private final DocumentStore documentStore;
+    private final TemplateSchemaService templateSchemaService;
+    private final ReportPayloadReader reportPayloadReader;
+    private final ReportMetrics reportMetrics;
+
+    public JReportService(TemplateRegistry templateRegistry, TemplateBulkhead templateBulkhead,
+                          PriorityScheduler priorityScheduler, ReportVirtualizer reportVirtualizer, ReportOutputCache reportOutputCache,
+                          ImagePreprocessor imagePreprocessor, ReportExporter reportExporter, BookFiller bookFiller,
+                          ProgressiveFiller progressiveFiller, DocumentStore documentStore,
+                          TemplateSchemaService templateSchemaService, ReportPayloadReader reportPayloadReader,
+                          ReportMetrics reportMetrics) {
+        this.templateRegistry = templateRegistry;
+        this.templateBulkhead = templateBulkhead;
+        this.priorityScheduler = priorityScheduler;
+        this.reportVirtualizer = reportVirtualizer;
+        this.reportOutputCache = reportOutputCache;
+        this.imagePreprocessor = imagePreprocessor;
+        this.reportExporter = reportExporter;
+        this.bookFiller = bookFiller;
+        this.progressiveFiller = progressiveFiller;
+        this.documentStore = documentStore;
+        this.templateSchemaService = templateSchemaService;
+        this.reportPayloadReader = reportPayloadReader;
+        this.reportMetrics = reportMetrics;
+    }
+
+    /**
+     * Generates a report and writes it to the HTTP response. Identical requests for the whole
+     * document as PDF are served from the output cache; the response carries an {@code ETag} and,
+     * with {@code jasper.cache.conditional-post} enabled, is answered with {@code 304 Not Modified}
+     * if the client already has the document. Other formats and page ranges are exported straight
+     * to the response.
+     *
+     * @param file_name   the name of the report
+     * @param data        the report data, keyed by template name
+     * @param bodyDigest  the digest of the request body the data was read from, which keys the
+     *                    output cache; if {@code null} the key is computed from the data
+     * @param options     the export format and pages
+     * @param ifNoneMatch the {@code If-None-Match} request header, may be {@code null}
+     * @param response    the HTTP response to write the report to
+     * @throws InvalidPayloadException  if the data does not match the templates
+     * @throws IllegalArgumentException if the requested pages do not exist
+     * @throws IOException              if the report cannot be generated or written
+     */
+    public void automated(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, byte[] bodyDigest,
+                          ExportOptions options, String ifNoneMatch, HttpServletResponse response) throws IOException {
+        ResourceUsage usage = ResourceUsage.start();
+        try {
+            validate(file_name, data);
+            respond(file_name, data, bodyDigest, reportExporter.resolveProfile(file_name, options), ifNoneMatch, response);
+        } finally {
+            recordUsage(file_name, usage);
+        }
+    }
+
+    private void respond(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, byte[] bodyDigest,
+                         ExportOptions options, String ifNoneMatch, HttpServletResponse response) throws IOException {
+        String cacheKey = options.isDefault() ? reportOutputCache.key(file_name, data, options.profile(), bodyDigest) : null;
+        if (cacheKey != null) {
+            String etag = ReportOutputCache.etag(cacheKey);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            if (reportOutputCache.isNotModified(ifNoneMatch, etag)) {
+                log.info("Client already has report '{}' ({}), responding 304.", file_name, etag);
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        // Cached documents are stored once under an id derived from their key. Without a key a
+        // document gets an id of its own, and is only stored if it is rendered into memory anyway.
+        boolean stored = documentStore.isEnabled() && options.isDefault();
+        byte[] pdf;
+        if (progressiveFiller.accepts(options)) {
+            pdf = cacheKey != null ? reportOutputCache.getIfPresent(cacheKey) : null;
+            if (pdf == null) {
+                // Streamed while it is filled, so a miss is cached and stored afterwards; its store id
+                // is announced from the next request for the same document on
+                if (cacheKey == null) {
+                    automated(file_name, data, options, response, null);
+                    return;
+                }
+                ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                automated(file_name, data, options, response, copy);
+                pdf = copy.toByteArray();
+                reportOutputCache.put(cacheKey, pdf);
+                if (stored) {
+                    documentStore.save(documentStore.idFor(cacheKey), file_name, pdf);
+                }
+                return;
+            }
+        } else if (cacheKey != null) {
+            pdf = reportOutputCache.get(cacheKey, () -> renderPdf(file_name, data, options));
+        } else if (stored) {
+            pdf = renderPdf(file_name, data, options);
+        } else {
+            automated(file_name, data, options, response, null);
+            return;
+        }
+        // A cached document was rendered, so its templates resolved
+        ReportMetrics.tagRequest(primaryTemplate(data));
+        if (stored) {
+            announce(cacheKey != null ? documentStore.idFor(cacheKey) : documentStore.newId(), file_name, pdf, response);
+        }
+        setHeaders(file_name, ExportFormat.PDF, response);
+        response.setContentLength(pdf.length);
+        response.getOutputStream().write(pdf);
+        response.getOutputStream().flush();
+        log.info("Report written for file: '{}', {} bytes.", file_name, pdf.length);
+    }
+
+    /**
+     * Stores a whole-document PDF and, once it is stored, announces its id in the response headers,
+     * so that the client can download the document again from {@code /reports/{id}}.
+     */
+    private void announce(String documentId, String file_name, byte[] pdf, HttpServletResponse response) {
+        if (documentStore.save(documentId, file_name, pdf)) {
+            response.setHeader(DocumentStore.ID_HEADER, documentId);
+            response.setHeader(HttpHeaders.CONTENT_LOCATION, "/reports/" + documentId);
+        }
+    }
+
+    /**
+     * Generates a report into the response, exporting it while it is filled if progressive export
+     * applies; {@code copy}, if given, receives a copy of the document.
+     */
+    private void automated(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, ExportOptions options,
+                           HttpServletResponse response, OutputStream copy) throws IOException {
+        try (Render render = startRender(file_name, data)) {
+            if (progressiveFiller.accepts(options)) {
+                exportProgressively(file_name, data, render.virtualization(), options, copy, response);
+            } else {
+                List<JasperPrint> prints = fillReport(file_name, data, render.virtualization(), options);
+                export(file_name, primaryTemplate(data), prints, options, response, copy);
+            }
+        } catch (JRException e) {
+            log.error("JasperReports error during report export for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("Failed to generate report due to JasperReports error", e);
+        } catch (IOException e) {
+            log.error("I/O error during report generation for file '{}': {}", file_name, e.getMessage(), e);
+            throw e; // Re-throw the IOException
+        }
+    }
+
+    /**
+     * Generates a report into memory instead of an HTTP response, e.g. for background jobs.
+     *
+     * @param file_name the name of the report
+     * @param data      the report data, keyed by template name
+     * @return the exported PDF
+     * @throws InvalidPayloadException if the data does not match the templates
+     * @throws IOException             if the report cannot be generated
+     */
+    public byte[] generatePdf(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data) throws IOException {
+        validate(file_name, data);
+        ExportOptions options = reportExporter.resolveProfile(file_name, ExportOptions.DEFAULT);
+        String cacheKey = reportOutputCache.key(file_name, data, options.profile());
+        if (cacheKey == null) {
+            return renderPdf(file_name, data, options);
+        }
+        return reportOutputCache.get(cacheKey, () -> renderPdf(file_name, data, options));
+    }
+
+    /**
+     * Renders a PDF with the profile configured for the report, without consulting the output
+     * cache, e.g. for warm-up fills.
+     */
+    byte[] renderPdf(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data) throws IOException {
+        return renderPdf(file_name, data, reportExporter.resolveProfile(file_name, ExportOptions.DEFAULT));
+    }
+
+    private byte[] renderPdf(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data,
+                             ExportOptions options) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Render render = startRender(file_name, data)) {
+            List<JasperPrint> prints = fillReport(file_name, data, render.virtualization(), options);
+            log.info("Exporting Jasper report to PDF bytes.");
+            String template = primaryTemplate(data);
+            long start = System.nanoTime();
+            boolean exported = false;
+            try {
+                reportExporter.export(prints, options, outputStream);
+                exported = true;
+            } finally {
+                reportMetrics.recordPhase("export", template, exported, start);
+            }
+            reportMetrics.recordDocument(template, ExportFormat.PDF, pageCount(prints), outputStream.size());
+            reportMetrics.recordPdf(template, options.profile(), outputStream.size(), System.nanoTime() - start);
+            log.info("Report exported successfully for file: '{}', {} bytes.", file_name, outputStream.size());
+        } catch (JRException e) {
+            log.error("JasperReports error during report export for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("Failed to generate report due to JasperReports error", e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Fills a report from buffered data. With book mode enabled, a request with several template
+     * groups has every group filled into its own print in parallel; the prints are exported as one
+     * document in request order. Virtualized fills and page ranges are filled in one part.
+     */
+    private List<JasperPrint> fillReport(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data,
+                                   ReportVirtualizer.Session virtualization, ExportOptions options) throws IOException {
+        List<ListSectionDataSource> groups = prepareGroups(file_name, data, options.profile());
+        String template = primaryTemplate(data);
+        try {
+            JasperReport masterReport = templateRegistry.get("master");
+            if (groups.size() > 1 && bookFiller.isEnabled() && options.isWholeDocument() && !virtualization.isActive()) {
+                log.info("Filling {} template groups in parallel.", groups.size());
+                List<Callable<JasperPrint>> parts = new ArrayList<>();
+                for (ListSectionDataSource sections : groups) {
+                    parts.add(() -> fill(masterReport, sections, virtualization, options));
+                }
+                return reportMetrics.time("fill", template, () -> bookFiller.fill(parts));
+            }
+
+            ListSectionDataSource sections = new ListSectionDataSource();
+            groups.forEach(sections::addAll);
+            return Collections.singletonList(reportMetrics.time("fill", template,
+                    () -> fill(masterReport, sections, virtualization, options)));
+
+        } catch (JRException e) {
+            log.error("JasperReports error during report generation for file '{}': {}", file_name, e.getMessage(), e);
+            // Re-throw or handle as per your application's error strategy
+            throw new IOException("Failed to generate report due to JasperReports error", e);
+        } catch (Exception e) { // Catch any other unexpected exceptions
+            log.error("An unexpected error occurred during report generation for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("An unexpected error occurred during report generation", e); // Wrap and re-throw
+        }
+    }
+
+    /**
+     * Resolves the templates of a request and prepares one master section per data row, grouped by
+     * template in request order. Groups without rows are left out. Images are prepared for the PDF
+     * profile of the document.
+     */
+    private List<ListSectionDataSource> prepareGroups(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data,
+                                                      PdfProfile profile) throws IOException {
         log.info("Starting automated report generation for file: '{}'", file_name);
         String full_file_name = file_name.trim().toLowerCase() + ".jrxml";
         log.debug("Full report template file name expected: {}", full_file_name);
@@ -29,158 +294,348 @@ public class JReportService {
         }
         log.debug("Received data for report generation: {}", data.keySet());
 
-        /* Map of InputStreams     */
-        LinkedHashMap<String, InputStream> inputStreamMap = new LinkedHashMap<>();
-        log.debug("Initialized inputStreamMap.");
-
         try {
-            /*Validate the existence of templates and put templates into the map of InputStreams*/
-            log.info("Loading report templates into InputStreams.");
-            loadReportTemplatesIntoInputStreams(inputStreamMap, data);
-            log.info("Successfully loaded {} report templates into InputStreams.", inputStreamMap.size());
-
-            /*compile the all the input streams in the InputStream map, then put them into the new map of the JasperReport*/
-            LinkedHashMap<String, JasperReport> compiledReports = new LinkedHashMap<>();
-            log.info("Compiling InputStreams into JasperReports.");
-            loadInputStreamsIntoJasperReports(inputStreamMap, compiledReports);
-            log.info("Successfully compiled {} JasperReports.", compiledReports.size());
-
-            // Prepare lists for dynamic subreports
-            List<JasperReport> subreportSources = new ArrayList<>();
-            List<JRDataSource> subreportDataSources = new ArrayList<>();
-            log.debug("Preparing lists for dynamic subreports.");
+            /*Resolve the compiled templates from the process-wide registry; compilation only happens on a cache miss*/
+            log.info("Resolving compiled report templates.");
+            LinkedHashMap<String, JasperReport> compiledReports = loadCompiledReports(data);
+            log.info("Successfully resolved {} compiled JasperReports.", compiledReports.size());
+            String template = primaryTemplate(data);
+            ReportMetrics.tagRequest(template);
+
+            // Prepare one master section per data row, grouped by template
+            List<ListSectionDataSource> groups = new ArrayList<>();
+            log.debug("Preparing master sections for dynamic subreports.");
 
             for (Map.Entry<String, List<Map<String, Object>>> stringListEntry : data.entrySet()) {
                 String templateKey = stringListEntry.getKey();
                 List<Map<String, Object>> values = stringListEntry.getValue();
 
-                JasperReport subreport = compiledReports.get(templateKey);
+                JasperReport subreport = compiledReports.get(TemplateRegistry.normalize(templateKey));
                 if (subreport == null) {
                     log.warn("Compiled report for key '{}' not found. Skipping subreport generation for this key.", templateKey);
                     continue;
                 }
                 log.debug("Processing subreport for key: '{}' with {} data entries.", templateKey, values.size());
+                reportMetrics.recordRows(TemplateRegistry.normalize(templateKey), values.size());
 
+                // Rows are stored column by column; each section reads its row by field index
+                ColumnarTable table = new ColumnarTable(ColumnLayout.of(subreport), values.size());
+                ListSectionDataSource sections = new ListSectionDataSource();
+                groups.add(sections);
                 for (Map<String, Object> value : values) {
-                    subreportSources.add(subreport);
-                    JRMapCollectionDataSource dataSource = new JRMapCollectionDataSource(Collections.singletonList(value));
-                    subreportDataSources.add(dataSource);
-                    log.trace("Added subreport '{}' and its data source to lists.", templateKey);
+                    int row = table.add(imagePreprocessor.prepare(TemplateRegistry.normalize(templateKey), subreport, value,
+                            profile));
+                    sections.add(subreport, table.row(row));
+                    log.trace("Added subreport '{}' and its data source to master sections.", templateKey);
                 }
             }
-            log.debug("Finished preparing subreport sources and data sources. Total subreports: {}", subreportSources.size());
-
-            Map<String, Object> parameters = new HashMap<>(data);
-            parameters.put("SubreportSources", subreportSources);
-            parameters.put("SubreportDataSources", subreportDataSources);
-            log.debug("Prepared report parameters.");
-
-            // Fill the report with data
-            JasperReport masterReport = compiledReports.get("master");
-            if (masterReport == null) {
-                log.error("Master report template 'master.jrxml' not found in compiled reports. Cannot fill report.");
-                throw new JRException("Master report 'master.jrxml' is missing.");
-            }
-            JRDataSource mainDataSource = new JREmptyDataSource(subreportSources.size());
-            log.info("Filling Jasper report with master template and data.");
-            JasperPrint jasperPrint = JasperFillManager.fillReport(masterReport, parameters, mainDataSource);
-            log.info("Jasper report filled successfully.");
-
-            // Set response headers
-            response.setContentType(MediaType.APPLICATION_PDF_VALUE);
-            response.setHeader("Content-Disposition", "attachment; filename=\"" + file_name.trim().toLowerCase() + ".pdf\"");
-            log.debug("Set response headers: Content-Type='{}', Content-Disposition='attachment; filename=\"{}\"'", MediaType.APPLICATION_PDF_VALUE, file_name.trim().toLowerCase() + ".pdf");
-
-            // Export PDF
-            log.info("Exporting Jasper report to PDF stream.");
-            JasperExportManager.exportReportToPdfStream(jasperPrint, response.getOutputStream());
-            response.getOutputStream().flush();
-            log.info("Report exported and output stream flushed successfully for file: '{}'.", file_name);
+            groups.removeIf(sections -> sections.size() == 0);
+            log.debug("Finished preparing master sections. Total subreports: {} in {} groups",
+                    groups.stream().mapToInt(ListSectionDataSource::size).sum(), groups.size());
+            return groups;
 
         } catch (JRException e) {
             log.error("JasperReports error during report generation for file '{}': {}", file_name, e.getMessage(), e);
             // Re-throw or handle as per your application's error strategy
             throw new IOException("Failed to generate report due to JasperReports error", e);
-        } catch (IOException e) {
-            log.error("I/O error during report generation for file '{}': {}", file_name, e.getMessage(), e);
-            throw e; // Re-throw the IOException
         } catch (Exception e) { // Catch any other unexpected exceptions
             log.error("An unexpected error occurred during report generation for file '{}': {}", file_name, e.getMessage(), e);
             throw new IOException("An unexpected error occurred during report generation", e); // Wrap and re-throw
         }
     }
 
-    private void loadInputStreamsIntoJasperReports(LinkedHashMap<String, InputStream> inputStreamMap, LinkedHashMap<String, JasperReport> compiledReports) throws JRException {
-        log.debug("Starting compilation of InputStreams to JasperReports. Total streams: {}", inputStreamMap.size());
-        for (Map.Entry<String, InputStream> entry : inputStreamMap.entrySet()) {
-            String templateName = entry.getKey();
-            InputStream inputStream = entry.getValue();
-            log.debug("Compiling template: '{}'", templateName);
+    /**
+     * Generates a report from a request body that is parsed lazily while the report is filled,
+     * so that only the row currently being filled is held in memory.
+     *
+     * @param file_name     the name of the generated file
+     * @param body          the request body, {@code {"template": [{row}, ...], ...}}
+     * @param contentLength the size of the request body in bytes, or {@code -1} if unknown
+     * @param contentType   the content type of the body, JSON, CBOR or Smile; JSON if {@code null}
+     * @param options       the export format and pages
+     * @param response      the HTTP response to write the report to
+     * @throws IllegalArgumentException if the body is malformed or contains no rows, or the requested pages do not exist
+     * @throws IOException              if the report cannot be generated or written
+     */
+    public void automatedStreaming(String file_name, InputStream body, long contentLength, String contentType,
+                                   ExportOptions options, HttpServletResponse response) throws IOException {
+        log.info("Starting streaming report generation for file: '{}'", file_name);
+
+        ResourceUsage usage = ResourceUsage.start();
+        ObjectMapper mapper = reportPayloadReader.mapperFor(contentType);
+        options = reportExporter.resolveProfile(file_name, options);
+        // Permits are taken as the templates appear in the body; the data source gives the slot back
+        // while it waits for one
+        try (JsonParser parser = mapper.getFactory().createParser(body);
+             TemplateBulkhead.Permits permits = templateBulkhead.open();
+             PriorityScheduler.Slot slot = priorityScheduler.admit();
+             ReportVirtualizer.Session virtualization = reportVirtualizer.open(file_name, -1, contentLength)) {
+            JsonStreamSectionDataSource sections = new JsonStreamSectionDataSource(parser, mapper, templateRegistry,
+                    imagePreprocessor, options.profile(), permits, slot);
+            JasperReport masterReport = templateRegistry.get("master");
+            long start = System.nanoTime();
+            JasperPrint jasperPrint = null;
             try {
-                // Compile the report and put it into the map
-                JasperReport compiledReport = JasperCompileManager.compileReport(inputStream);
-                compiledReports.put(templateName, compiledReport);
-                log.debug("Successfully compiled template: '{}'", templateName);
-            } catch (JRException e) {
-                log.error("Failed to compile template '{}': {}", templateName, e.getMessage(), e);
-                throw e; // Re-throw to be caught by the calling method
+                jasperPrint = fill(masterReport, sections, virtualization, options);
             } finally {
-                // It's good practice to close InputStreams once they are consumed, especially after compilation.
-                // However, JasperReports might close them internally after compilation.
-                // If you encounter issues with stream being closed too early, you might need to adjust.
-                try {
-                    if (inputStream != null) {
-                        inputStream.close();
-                        log.trace("Closed InputStream for template: '{}'", templateName);
+                // The templates are only known once the body has been read
+                reportMetrics.recordPhase("fill", streamedTemplate(sections), jasperPrint != null, start);
+            }
+            sections.getRowCounts().forEach(reportMetrics::recordRows);
+            String template = streamedTemplate(sections);
+            ReportMetrics.tagRequest(template);
+            if (sections.getSectionCount() == 0) {
+                log.warn("Streamed input data contained no rows for file: '{}'. Throwing IllegalArgumentException.", file_name);
+                throw new IllegalArgumentException("Data list cannot be empty");
+            }
+            log.debug("Filled {} streamed sections.", sections.getSectionCount());
+            export(file_name, template, Collections.singletonList(jasperPrint), options, response, null);
+
+        } catch (JRException e) {
+            TooManyRequestsException saturated = findCause(e, TooManyRequestsException.class);
+            if (saturated != null) {
+                throw saturated;
+            }
+            IllegalArgumentException invalid = findCause(e, IllegalArgumentException.class);
+            if (invalid != null) {
+                throw invalid;
+            }
+            JsonProcessingException malformed = findCause(e, JsonProcessingException.class);
+            if (malformed != null) {
+                log.warn("Malformed streamed input data for file '{}': {}", file_name, malformed.getOriginalMessage());
+                throw new IllegalArgumentException("Malformed JSON request: " + malformed.getOriginalMessage(), e);
+            }
+            log.error("JasperReports error during streaming report generation for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("Failed to generate report due to JasperReports error", e);
+        } catch (IllegalArgumentException | TooManyRequestsException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("An unexpected error occurred during streaming report generation for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("An unexpected error occurred during report generation", e);
+        } finally {
+            recordUsage(file_name, usage);
+        }
+    }
+
+    /**
+     * Checks the data against the template schemas and drops the values no template reads, before
+     * anything is filled or a cache key is computed.
+     */
+    private void validate(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data) throws IOException {
+        try {
+            templateSchemaService.validate(data);
+        } catch (JRException e) {
+            log.error("JasperReports error while resolving templates for file '{}': {}", file_name, e.getMessage(), e);
+            throw new IOException("Failed to generate report due to JasperReports error", e);
+        }
+    }
+
+    /**
+     * Takes what a buffered render holds while it fills and exports: the bulkhead permits of its
+     * templates, then a render slot, then a virtualizer session. The permits come first, so that a
+     * request waiting for other fills of its templates does not keep a slot from the queue meanwhile.
+     */
+    private Render startRender(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data) throws IOException {
+        TemplateBulkhead.Permits permits = data == null ? templateBulkhead.open() : templateBulkhead.acquire(data.keySet());
+        PriorityScheduler.Slot slot = null;
+        try {
+            slot = priorityScheduler.admit();
+            return new Render(permits, slot, openVirtualization(file_name, data));
+        } catch (IOException | RuntimeException e) {
+            if (slot != null) {
+                slot.close();
+            }
+            permits.close();
+            throw e;
+        }
+    }
+
+    private ReportVirtualizer.Session openVirtualization(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data) throws IOException {
+        if (data == null) {
+            return reportVirtualizer.open(file_name, -1, -1);
+        }
+        long rows = data.values().stream().mapToLong(rowList -> rowList == null ? 0 : rowList.size()).sum();
+        return reportVirtualizer.open(file_name, rows, ReportVirtualizer.estimatePayloadBytes(data));
+    }
+
+    private JasperPrint fill(JasperReport masterReport, SectionDataSource sections, ReportVirtualizer.Session virtualization,
+                             ExportOptions options) throws JRException {
+        if (masterReport == null) {
+            log.error("Master report template 'master.jrxml' not found in compiled reports. Cannot fill report.");
+            throw new JRException("Master report 'master.jrxml' is missing.");
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        virtualization.applyTo(parameters);
+        log.info("Filling Jasper report with master template and data{}.", virtualization.isActive() ? " (virtualized)" : "");
+        JasperPrint jasperPrint;
+        if (options.isBounded()) {
+            // Only the leading pages are exported, so stop taking sections once they are complete
+            ReportFiller filler = JRFiller.createReportFiller(DefaultJasperReportsContext.getInstance(), masterReport);
+            filler.addFillListener(new FillListener() {
+                @Override
+                public void pageGenerated(JasperPrint print, int pageIndex) {
+                    if (pageIndex >= options.lastPage()) {
+                        sections.stop();
                     }
-                } catch (IOException ioException) {
-                    log.warn("Failed to close InputStream for template '{}': {}", templateName, ioException.getMessage());
                 }
-            }
+
+                @Override
+                public void pageUpdated(JasperPrint print, int pageIndex) {
+                }
+            });
+            jasperPrint = filler.fill(parameters, sections);
+        } else {
+            jasperPrint = JasperFillManager.fillReport(masterReport, parameters, sections);
         }
-        log.debug("Finished compiling all InputStreams.");
+        virtualization.fillFinished();
+        log.info("Jasper report filled successfully.");
+        return jasperPrint;
     }
 
-    private void loadReportTemplatesIntoInputStreams(LinkedHashMap<String, InputStream> inputStreamMap, LinkedHashMap<String, List<Map<String, Object>>> data) throws JRException {
-        log.debug("Starting to load report templates into InputStreams.");
+    private void export(String file_name, String template, List<JasperPrint> prints, ExportOptions options,
+                        HttpServletResponse response, OutputStream copy) throws JRException, IOException {
+        reportExporter.checkPages(prints, options);
+        setHeaders(file_name, options.format(), response);
 
-        // Ensure master template is loaded first
-        String masterTemplatePath = "reports/report/master.jrxml";
-        InputStream masterStream = getClass().getClassLoader().getResourceAsStream(masterTemplatePath);
-        if (masterStream == null) {
-            log.error("Master report template not found: {}. Throwing JRException.", masterTemplatePath);
-            throw new JRException("❌ Master report template not found: " + masterTemplatePath);
+        log.info("Exporting Jasper report to {} stream.", options.format());
+        OutputStream target = copy != null ? new TeeOutputStream(response.getOutputStream(), copy) : response.getOutputStream();
+        CountingOutputStream out = new CountingOutputStream(target);
+        long start = System.nanoTime();
+        boolean exported = false;
+        try {
+            reportExporter.export(prints, options, out);
+            exported = true;
+        } finally {
+            reportMetrics.recordPhase("export", template, exported, start);
         }
-        inputStreamMap.put("master", masterStream);
-        log.debug("Loaded master template: '{}'", masterTemplatePath);
+        long exportNanos = System.nanoTime() - start;
+        response.getOutputStream().flush();
+        reportMetrics.recordDocument(template, options.format(), pageCount(prints), out.getByteCount());
+        if (options.format() == ExportFormat.PDF) {
+            reportMetrics.recordPdf(template, options.profile(), out.getByteCount(), exportNanos);
+        }
+        log.info("Report exported and output stream flushed successfully for file: '{}'.", file_name);
+    }
 
-        // Load other required templates based on the data keys
-        for (String key : data.keySet()) {
-            // Only load if it's not the master key, as master is already handled
-            if (!"master".equals(key)) {
-                String templatePath = "reports/report/" + key.trim().toLowerCase() + ".jrxml";
-                InputStream stream = getClass().getClassLoader().getResourceAsStream(templatePath);
-                if (stream == null) {
-                    log.error("Report template not found: {}. Throwing JRException.", templatePath);
-                    throw new JRException("❌ Report template not found: " + templatePath);
+    private void exportProgressively(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data,
+                                     ReportVirtualizer.Session virtualization, ExportOptions options, OutputStream copy,
+                                     HttpServletResponse response) throws JRException, IOException {
+        ListSectionDataSource sections = new ListSectionDataSource();
+        prepareGroups(file_name, data, options.profile()).forEach(sections::addAll);
+        String template = primaryTemplate(data);
+
+        // No content length, so the finished pages are sent in chunks as they are flushed. The headers
+        // are only set once the first page is written, so that an early failure is answered as usual.
+        OutputStream target = copy != null ? new TeeOutputStream(response.getOutputStream(), copy) : response.getOutputStream();
+        CountingOutputStream out = new CountingOutputStream(target) {
+            @Override
+            protected synchronized void beforeWrite(int n) {
+                if (getByteCount() == 0) {
+                    setHeaders(file_name, ExportFormat.PDF, response);
                 }
-                // Only add if not already present (to avoid redundant additions if a key matches "master")
-                if (!inputStreamMap.containsKey(key.trim().toLowerCase())) {
-                    inputStreamMap.put(key.trim().toLowerCase(), stream);
-                    log.debug("Loaded template: '{}'", templatePath);
-                } else {
-                    log.debug("Template '{}' already loaded, skipping redundant load.", templatePath);
-                    // It's crucial to close streams if you're fetching them multiple times without using them
-                    // or if they are replaced in the map.
-                    try {
-                        stream.close();
-                    } catch (IOException e) {
-                        log.warn("Failed to close redundant InputStream for '{}': {}", templatePath, e.getMessage());
-                    }
+                super.beforeWrite(n);
+            }
+        };
+        long start = System.nanoTime();
+        boolean exported = false;
+        JasperPrint jasperPrint;
+        try (ProgressiveFiller.Fill fill = progressiveFiller.start(template, templateRegistry.get("master"), sections, virtualization)) {
+            try {
+                reportExporter.exportPdf(fill.input(out), options.profile(), out);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (JRException | JRRuntimeException e) {
+                // Report the fill failure rather than the exporter that stopped on it
+                JRException failure = fill.failure();
+                if (failure != null) {
+                    throw failure;
                 }
+                throw e;
+            }
+            jasperPrint = fill.await();
+            exported = true;
+        } finally {
+            reportMetrics.recordPhase("export", template, exported, start);
+        }
+        out.flush();
+        reportMetrics.recordDocument(template, ExportFormat.PDF, jasperPrint.getPages().size(), out.getByteCount());
+        // The export waited for the fill, so only the size is comparable
+        reportMetrics.recordPdf(template, options.profile(), out.getByteCount(), -1);
+        log.info("Report streamed for file: '{}', {} pages, {} bytes.", file_name, jasperPrint.getPages().size(), out.getByteCount());
+    }
+
+    private void setHeaders(String file_name, ExportFormat format, HttpServletResponse response) {
+        String disposition = (format.isInline() ? "inline" : "attachment")
+                + "; filename=\"" + file_name.trim().toLowerCase() + "." + format.getExtension() + "\"";
+        response.setContentType(format.getMediaType().toString());
+        response.setHeader("Content-Disposition", disposition);
+        log.debug("Set response headers: Content-Type='{}', Content-Disposition='{}'", format.getMediaType(), disposition);
+    }
+
+    private void recordUsage(String file_name, ResourceUsage usage) {
+        long cpuNanos = usage.cpuNanos();
+        long allocatedBytes = usage.allocatedBytes();
+        reportMetrics.recordUsage(ReportMetrics.currentTemplate(), cpuNanos, allocatedBytes);
+        log.info("Request for file '{}' used {} ms CPU and allocated {} MB on its thread.", file_name,
+                cpuNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(cpuNanos) : "n/a",
+                allocatedBytes >= 0 ? String.format("%.1f", allocatedBytes / (1024.0 * 1024.0)) : "n/a");
+    }
+
+    private static String primaryTemplate(LinkedHashMap<String, List<Map<String, Object>>> data) {
+        // Only called once all templates of the request were resolved
+        return TemplateRegistry.normalize(data.keySet().iterator().next());
+    }
+
+    private static String streamedTemplate(JsonStreamSectionDataSource sections) {
+        return sections.getRowCounts().keySet().stream().findFirst().orElse(ReportMetrics.UNKNOWN);
+    }
+
+    private static long pageCount(List<JasperPrint> prints) {
+        return prints.stream().mapToLong(print -> print.getPages().size()).sum();
+    }
+
+    private static <T extends Throwable> T findCause(Throwable throwable, Class<T> type) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    private LinkedHashMap<String, JasperReport> loadCompiledReports(LinkedHashMap<String, List<Map<String, Object>>> data) throws JRException {
+        log.debug("Starting to resolve compiled report templates.");
+        LinkedHashMap<String, JasperReport> compiledReports = new LinkedHashMap<>();
+
+        // Ensure master template is resolved first
+        compiledReports.put("master", templateRegistry.get("master"));
+        log.debug("Resolved master template.");
+
+        // Resolve other required templates based on the data keys
+        for (String key : data.keySet()) {
+            String templateName = TemplateRegistry.normalize(key);
+            if (compiledReports.containsKey(templateName)) {
+                log.debug("Template '{}' already resolved, skipping redundant lookup.", templateName);
+                continue;
             }
+            compiledReports.put(templateName, templateRegistry.get(templateName));
+            log.debug("Resolved template: '{}'", templateName);
         }
-        log.debug("Finished loading all required report templates.");
+        log.debug("Finished resolving all required report templates.");
+        return compiledReports;
     }
 
-}
\ No newline at end of file
+    /**
+     * The bulkhead permits, render slot and virtualizer session of a buffered render.
+     */
+    private record Render(TemplateBulkhead.Permits permits, PriorityScheduler.Slot slot,
+                          ReportVirtualizer.Session virtualization) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            // Closed in reverse order: the session, the slot, then the permits
+            try (permits; slot; virtualization) {
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.jaspertable.service;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Trade-offs between export time and size of PDF documents.
+ * <p>
+ * Fonts are embedded as subsets by the exporter in every profile, so the profiles differ in how
+ * the document structure is compressed and how much work is spent on embedded images.
+ */
+public enum PdfProfile {
+
+    /**
+     * Images are embedded as received and the document structure is written uncompressed; the
+     * cheapest to produce and the largest.
+     */
+    FAST("fast", false),
+
+    /**
+     * Images are downscaled and recompressed with the {@code jasper.images.*} settings when that
+     * makes them smaller, and objects are packed into compressed object streams.
+     */
+    BALANCED("balanced", true),
+
+    /**
+     * Like {@link #BALANCED}, but images are downscaled to {@code jasper.pdf.smallest-image-dpi} and
+     * recompressed with {@code jasper.pdf.smallest-jpeg-quality} even if they need no downscaling.
+     */
+    SMALLEST("smallest", true);
+
+    private final String name;
+    private final boolean compressed;
+
+    PdfProfile(String name, boolean compressed) {
+        this.name = name;
+        this.compressed = compressed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether objects are packed into compressed object streams, see
+     * {@link net.sf.jasperreports.export.PdfExporterConfiguration#isCompressed()}.
+     *
+     * @return {@code true} for full compression
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Parses a profile name.
+     *
+     * @param name the profile name, e.g. {@code smallest}, may be {@code null}
+     * @return the profile, or {@code null} if the name is blank
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static PdfProfile of(String name) {
+        if (!StringUtils.hasText(name)) {
+            return null;
+        }
+        for (PdfProfile candidate : values()) {
+            if (candidate.name.equalsIgnoreCase(name.trim())) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported PDF profile: " + name);
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits render work by priority class, so that a flood of bulk requests cannot push the
+ * documents interactive users wait for to the back of the line.
+ * <p>
+ * At most {@code jasper.priority.concurrency} documents are filled and exported at the same time.
+ * Work beyond that waits in the bounded queue of its class; a full queue rejects it with 429.
+ * Whenever a slot is freed it goes to the head of one of the queues, chosen by stride scheduling:
+ * while several classes wait, each gets a share of the slots proportional to its weight, and a
+ * class that was idle does not save up a share for later. A document that has waited longer than
+ * the deadline of its class is dropped before it starts, as its client has most likely given up.
+ * <p>
+ * The class of an HTTP request is the one configured for its client id, otherwise the one named by
+ * its priority header, otherwise the default class; work outside of a request, such as batch
+ * documents and jobs, runs in the background class. Queue depths are published in the
+ * {@code report.priority.queued} and {@code report.priority.running} gauges and the time spent
+ * waiting in the {@code report.priority.wait} timer, tagged by {@code class} and, for the timer,
+ * {@code outcome} ({@code started}, {@code expired} or {@code rejected}).
+ */
+@Component
+@Slf4j
+public class PriorityScheduler {
+
+    private final ReportProperties.Priority properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, PriorityClass> classes = new LinkedHashMap<>();
+    private final Map<String, PriorityClass> clients = new HashMap<>();
+    private final PriorityClass defaultClass;
+    private final PriorityClass backgroundClass;
+    private final int concurrency;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running;
+    /** The pass of the class that was last given a slot, which idle classes catch up to. */
+    private double virtualTime;
+
+    public PriorityScheduler(ReportProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getPriority();
+        this.meterRegistry = meterRegistry;
+        this.concurrency = Math.max(1, this.properties.getConcurrency());
+        this.properties.getClasses().forEach((name, settings) -> {
+            PriorityClass priorityClass = new PriorityClass(normalize(name), settings);
+            classes.put(priorityClass.name, priorityClass);
+            Gauge.builder("report.priority.queued", priorityClass, this::queued)
+                    .description("Documents waiting for a render slot")
+                    .tag("class", priorityClass.name)
+                    .register(meterRegistry);
+            Gauge.builder("report.priority.running", priorityClass, this::running)
+                    .description("Documents holding a render slot")
+                    .tag("class", priorityClass.name)
+                    .register(meterRegistry);
+        });
+        this.defaultClass = configuredClass(this.properties.getDefaultClass(), "jasper.priority.default-class");
+        this.backgroundClass = configuredClass(this.properties.getBackgroundClass(), "jasper.priority.background-class");
+        this.properties.getClients().forEach((client, name) ->
+                clients.put(normalize(client), configuredClass(name, "jasper.priority.clients." + client)));
+    }
+
+    /**
+     * Waits for a render slot in the priority class of the current request.
+     *
+     * @return the slot, to be closed when the document is rendered
+     * @throws IllegalArgumentException if the request names an unknown priority class
+     * @throws TooManyRequestsException if the queue of the class is full, or the slot is not
+     *                                  available within the deadline of the class
+     */
+    public Slot admit() {
+        if (!properties.isEnabled()) {
+            return new Slot(null);
+        }
+        return admit(currentClass());
+    }
+
+    private Slot admit(PriorityClass priorityClass) {
+        long start = System.nanoTime();
+        Ticket ticket;
+        lock.lock();
+        try {
+            // Queues are only ever non-empty while every slot is taken
+            if (running >= concurrency && priorityClass.queue.size() >= priorityClass.queueCapacity) {
+                ticket = null;
+            } else {
+                ticket = new Ticket(priorityClass, start + priorityClass.deadline.toNanos(), lock.newCondition());
+                if (priorityClass.queue.isEmpty()) {
+                    priorityClass.pass = Math.max(priorityClass.pass, virtualTime);
+                }
+                priorityClass.queue.add(ticket);
+                dispatch();
+                await(ticket);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long waited = System.nanoTime() - start;
+        if (ticket == null) {
+            recordWait(priorityClass, "rejected", waited);
+            log.warn("Queue of priority class '{}' is full ({} waiting), rejecting request", priorityClass.name,
+                    priorityClass.queueCapacity);
+            throw new TooManyRequestsException("Too many queued '" + priorityClass.name + "' reports, retry later",
+                    retryAfter(priorityClass));
+        }
+        if (!ticket.started) {
+            recordWait(priorityClass, "expired", waited);
+            log.warn("Dropping '{}' report that waited {} ms for a render slot", priorityClass.name, waited / 1_000_000);
+            throw new TooManyRequestsException("The service is saturated with '" + priorityClass.name
+                    + "' reports, retry later", retryAfter(priorityClass));
+        }
+        recordWait(priorityClass, "started", waited);
+        log.trace("Started '{}' report after {} ms in the queue", priorityClass.name, waited / 1_000_000);
+        return new Slot(priorityClass);
+    }
+
+    /**
+     * Waits until the ticket is given a slot, or takes it out of the queue once its deadline has
+     * passed or the thread is interrupted. Called with the lock held.
+     */
+    private void await(Ticket ticket) {
+        while (!ticket.started) {
+            long remaining = ticket.deadline - System.nanoTime();
+            if (remaining <= 0) {
+                ticket.priorityClass.queue.remove(ticket);
+                return;
+            }
+            try {
+                ticket.signal.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (ticket.started) {
+                    release(ticket.priorityClass);
+                    ticket.started = false;
+                } else {
+                    ticket.priorityClass.queue.remove(ticket);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands free slots to the waiting tickets, dropping those whose deadline has passed. Called with
+     * the lock held.
+     */
+    private void dispatch() {
+        long now = System.nanoTime();
+        while (running < concurrency) {
+            PriorityClass next = null;
+            for (PriorityClass priorityClass : classes.values()) {
+                Ticket head;
+                while ((head = priorityClass.queue.peek()) != null && head.deadline - now <= 0) {
+                    // Wakes the waiting thread, which finds itself out of the queue and not started
+                    priorityClass.queue.poll();
+                    head.signal.signal();
+                }
+                if (head != null && (next == null || priorityClass.pass < next.pass)) {
+                    next = priorityClass;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Ticket ticket = next.queue.poll();
+            virtualTime = next.pass;
+            next.pass += next.stride;
+            next.running++;
+            running++;
+            ticket.started = true;
+            ticket.signal.signal();
+        }
+    }
+
+    private void release(PriorityClass priorityClass) {
+        lock.lock();
+        try {
+            priorityClass.running--;
+            running--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the priority class of the current HTTP request, or the background class outside of a
+     * request.
+     */
+    private PriorityClass currentClass() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return backgroundClass;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String client = request.getHeader(properties.getClientHeader());
+        if (StringUtils.hasText(client)) {
+            PriorityClass priorityClass = clients.get(normalize(client));
+            if (priorityClass != null) {
+                return priorityClass;
+            }
+        }
+        String name = request.getHeader(properties.getHeader());
+        if (StringUtils.hasText(name)) {
+            PriorityClass priorityClass = classes.get(normalize(name));
+            if (priorityClass == null) {
+                throw new IllegalArgumentException("Unknown priority class: " + name + ", expected one of "
+                        + String.join(", ", classes.keySet()));
+            }
+            return priorityClass;
+        }
+        return defaultClass;
+    }
+
+    private PriorityClass configuredClass(String name, String property) {
+        PriorityClass priorityClass = classes.get(normalize(name));
+        if (priorityClass == null) {
+            throw new IllegalStateException(property + " names an unknown priority class: " + name);
+        }
+        return priorityClass;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private int queued(PriorityClass priorityClass) {
+        lock.lock();
+        try {
+            return priorityClass.queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int running(PriorityClass priorityClass) {
+        lock.lock();
+        try {
+            return priorityClass.running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(PriorityClass priorityClass, String outcome, long waitedNanos) {
+        Timer.builder("report.priority.wait")
+                .description("Time spent waiting for a render slot")
+                .tag("class", priorityClass.name)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static long retryAfter(PriorityClass priorityClass) {
+        return Math.max(1, priorityClass.deadline.toSeconds());
+    }
+
+    /**
+     * A render slot held by one document. Closing it hands the slot to the next waiting document.
+     */
+    public class Slot implements AutoCloseable {
+
+        private PriorityClass priorityClass;
+
+        private Slot(PriorityClass priorityClass) {
+            this.priorityClass = priorityClass;
+        }
+
+        /**
+         * Hands the slot to the next waiting document while the current thread waits for something
+         * else, such as a bulkhead permit, and queues for a slot in the same class again afterwards.
+         * If the wait fails, the slot is not taken again.
+         *
+         * @param wait what to wait for without a slot
+         * @throws TooManyRequestsException if the queue of the class is full, or the slot is not
+         *                                  available again within the deadline of the class
+         */
+        public void releaseWhile(Runnable wait) {
+            PriorityClass held = priorityClass;
+            if (held == null) {
+                wait.run();
+                return;
+            }
+            close();
+            wait.run();
+            priorityClass = admit(held).priorityClass;
+        }
+
+        @Override
+        public void close() {
+            if (priorityClass != null) {
+                release(priorityClass);
+                priorityClass = null;
+            }
+        }
+    }
+
+    private static final class PriorityClass {
+
+        private final String name;
+        private final double stride;
+        private final int queueCapacity;
+        private final Duration deadline;
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private double pass;
+        private int running;
+
+        PriorityClass(String name, ReportProperties.PriorityClass settings) {
+            this.name = name;
+            this.stride = 1.0 / Math.max(1, settings.getWeight());
+            this.queueCapacity = Math.max(0, settings.getQueueCapacity());
+            this.deadline = settings.getDeadline();
+        }
+    }
+
+    private static final class Ticket {
+
+        private final PriorityClass priorityClass;
+        private final long deadline;
+        private final Condition signal;
+        private boolean started;
+
+        Ticket(PriorityClass priorityClass, long deadline, Condition signal) {
+            this.priorityClass = priorityClass;
+            this.deadline = deadline;
+            this.signal = signal;
+        }
+    }
+}
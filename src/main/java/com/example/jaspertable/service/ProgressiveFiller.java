@@ -0,0 +1,336 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRRuntimeException;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.AsynchronousFillHandle;
+import net.sf.jasperreports.engine.fill.AsynchronousFilllListener;
+import net.sf.jasperreports.engine.fill.FillListener;
+import net.sf.jasperreports.export.ExporterInput;
+import net.sf.jasperreports.export.ExporterInputItem;
+import net.sf.jasperreports.export.SimpleExporterInputItem;
+import org.springframework.stereotype.Component;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills a report in the background and hands its finished pages to the PDF exporter while the fill
+ * is still running, so that the first pages reach the client long before a large document is
+ * complete.
+ * <p>
+ * The pages are handed out in chunks of at least {@code jasper.progressive.chunk-pages} pages, each
+ * chunk being one item of the exporter input. A page is handed out once the filler has moved on to
+ * the next page and the page has no pending delayed evaluations, e.g. a page total evaluated at
+ * report time; a template with such elements is therefore only exported once its fill completes.
+ * The response is flushed before the exporter waits for the next chunk.
+ */
+@Component
+@Slf4j
+public class ProgressiveFiller {
+
+    private static final long CANCEL_TIMEOUT_SECONDS = 30;
+
+    private final ReportProperties.Progressive properties;
+    private final ReportMetrics reportMetrics;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public ProgressiveFiller(ReportProperties properties, ReportMetrics reportMetrics) {
+        this.properties = properties.getProgressive();
+        this.reportMetrics = reportMetrics;
+    }
+
+    /**
+     * Returns whether a document is exported while it is being filled.
+     *
+     * @param options the export options of the request
+     * @return {@code true} if progressive export is enabled and the whole document is exported as PDF
+     */
+    public boolean accepts(ExportOptions options) {
+        return properties.isEnabled() && options.format() == ExportFormat.PDF && options.isWholeDocument();
+    }
+
+    /**
+     * Starts filling a report on a background thread.
+     *
+     * @param template       the template tag of the fill metrics
+     * @param masterReport   the report to fill
+     * @param dataSource     the data of the report
+     * @param virtualization the page virtualization of the request
+     * @return the running fill; closing it cancels the fill if it has not completed
+     * @throws JRException if the fill cannot be started
+     */
+    public Fill start(String template, JasperReport masterReport, JRDataSource dataSource,
+                      ReportVirtualizer.Session virtualization) throws JRException {
+        Map<String, Object> parameters = new HashMap<>();
+        virtualization.applyTo(parameters);
+        AsynchronousFillHandle handle = AsynchronousFillHandle.createHandle(DefaultJasperReportsContext.getInstance(),
+                masterReport, parameters, dataSource);
+        handle.setThreadName("report-fill-progressive-" + threadCount.incrementAndGet());
+
+        Fill fill = new Fill(handle, Math.max(1, properties.getChunkPages()), template, virtualization);
+        handle.addFillListener(fill);
+        handle.addListener(fill);
+        log.info("Filling Jasper report progressively{}.", virtualization.isActive() ? " (virtualized)" : "");
+        handle.startFill();
+        return fill;
+    }
+
+    /**
+     * A report being filled in the background.
+     */
+    public final class Fill implements FillListener, AsynchronousFilllListener, AutoCloseable {
+
+        private final AsynchronousFillHandle handle;
+        private final int chunkPages;
+        private final String template;
+        private final ReportVirtualizer.Session virtualization;
+        private final long startNanos = System.nanoTime();
+
+        /** Pages in the order they were generated; guarded by this. */
+        private final List<JRPrintPage> pages = new ArrayList<>();
+        private final List<ExporterInputItem> chunks = new ArrayList<>();
+        private JasperPrint print;
+        private JasperPrint result;
+        private Throwable error;
+        private boolean done;
+        private int delivered;
+
+        private Fill(AsynchronousFillHandle handle, int chunkPages, String template,
+                     ReportVirtualizer.Session virtualization) {
+            this.handle = handle;
+            this.chunkPages = chunkPages;
+            this.template = template;
+            this.virtualization = virtualization;
+        }
+
+        /**
+         * Returns the exporter input of the document. Its items become available as pages are
+         * finished; the exporter blocks until the next item is ready or the fill has ended.
+         *
+         * @param output flushed before the exporter waits for a chunk after the first one
+         * @return the input for a single export
+         */
+        public ExporterInput input(Flushable output) {
+            List<ExporterInputItem> items = new AbstractList<>() {
+                @Override
+                public ExporterInputItem get(int index) {
+                    return chunk(index, output);
+                }
+
+                @Override
+                public int size() {
+                    return chunkCount();
+                }
+            };
+            return () -> items;
+        }
+
+        /**
+         * Waits for the fill to end.
+         *
+         * @return the complete document
+         * @throws JRException if the fill failed or was cancelled
+         */
+        public synchronized JasperPrint await() throws JRException {
+            awaitDone();
+            JRException failure = failure();
+            if (failure != null) {
+                throw failure;
+            }
+            if (result == null) {
+                throw new JRException("The report fill was cancelled");
+            }
+            return result;
+        }
+
+        /**
+         * Returns why the fill failed, without waiting for it.
+         *
+         * @return the failure, or {@code null} if the fill is running, completed or was cancelled
+         */
+        public synchronized JRException failure() {
+            if (error == null) {
+                return null;
+            }
+            return error instanceof JRException ? (JRException) error : new JRException(error);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+            }
+            try {
+                log.info("Cancelling the progressive fill.");
+                handle.cancellFill();
+            } catch (JRException | RuntimeException e) {
+                log.warn("Failed to cancel the progressive fill: {}", e.getMessage());
+            }
+            synchronized (this) {
+                // The virtualization session is closed after this, so wait for the fill thread to let go of it
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CANCEL_TIMEOUT_SECONDS);
+                long remaining;
+                while (!done && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void pageGenerated(JasperPrint jasperPrint, int pageIndex) {
+            print = jasperPrint;
+            pages.add(jasperPrint.getPages().get(pageIndex));
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void pageUpdated(JasperPrint jasperPrint, int pageIndex) {
+            notifyAll();
+        }
+
+        @Override
+        public void reportFinished(JasperPrint jasperPrint) {
+            virtualization.fillFinished();
+            reportMetrics.recordPhase("fill", template, true, startNanos);
+            log.info("Jasper report filled successfully, {} pages.", jasperPrint.getPages().size());
+            end(jasperPrint, null);
+        }
+
+        @Override
+        public void reportCancelled() {
+            reportMetrics.recordPhase("fill", template, false, startNanos);
+            end(null, null);
+        }
+
+        @Override
+        public void reportFillError(Throwable t) {
+            reportMetrics.recordPhase("fill", template, false, startNanos);
+            end(null, t);
+        }
+
+        private synchronized void end(JasperPrint jasperPrint, Throwable t) {
+            result = jasperPrint;
+            error = t;
+            done = true;
+            notifyAll();
+        }
+
+        private synchronized int chunkCount() {
+            if (!done) {
+                // Another chunk follows: the last generated page is only handed out once it is complete
+                return chunks.size() + 1;
+            }
+            failIfUnsuccessful();
+            boolean remaining = delivered < result.getPages().size() || chunks.isEmpty();
+            return chunks.size() + (remaining ? 1 : 0);
+        }
+
+        private ExporterInputItem chunk(int index, Flushable output) {
+            if (index > 0) {
+                // The previous chunk has been written, send it before waiting for the next one
+                try {
+                    output.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            synchronized (this) {
+                if (index < chunks.size()) {
+                    return chunks.get(index);
+                }
+                if (index > chunks.size()) {
+                    throw new IndexOutOfBoundsException("Chunk " + index + " requested before chunk " + chunks.size());
+                }
+                while (true) {
+                    if (done) {
+                        failIfUnsuccessful();
+                        // The last page is never handed out early, so the last chunk is only empty for a document without pages
+                        List<JRPrintPage> finalPages = result.getPages();
+                        return addChunk(result, finalPages.subList(delivered, finalPages.size()));
+                    }
+                    int ready = 0;
+                    while (delivered + ready < pages.size() - 1 && handle.isPageFinal(delivered + ready)) {
+                        ready++;
+                    }
+                    if (ready >= chunkPages) {
+                        return addChunk(print, pages.subList(delivered, delivered + ready));
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new JRRuntimeException(e);
+                    }
+                }
+            }
+        }
+
+        private ExporterInputItem addChunk(JasperPrint source, List<JRPrintPage> chunkPages) {
+            JasperPrint chunk = new JasperPrint();
+            // Only what the PDF exporter reads from a print
+            chunk.setName(source.getName());
+            chunk.setPageWidth(source.getPageWidth());
+            chunk.setPageHeight(source.getPageHeight());
+            chunk.setTopMargin(source.getTopMargin());
+            chunk.setLeftMargin(source.getLeftMargin());
+            chunk.setBottomMargin(source.getBottomMargin());
+            chunk.setRightMargin(source.getRightMargin());
+            chunk.setOrientation(source.getOrientationValue());
+            chunk.setLocaleCode(source.getLocaleCode());
+            chunk.setTimeZoneId(source.getTimeZoneId());
+            chunk.setFormatFactoryClass(source.getFormatFactoryClass());
+            for (String name : source.getPropertyNames()) {
+                chunk.setProperty(name, source.getProperty(name));
+            }
+            chunkPages.forEach(chunk::addPage);
+            delivered += chunkPages.size();
+            log.debug("Handing {} pages to the exporter, {} in total.", chunkPages.size(), delivered);
+
+            ExporterInputItem item = new SimpleExporterInputItem(chunk);
+            chunks.add(item);
+            return item;
+        }
+
+        private void failIfUnsuccessful() {
+            if (error != null) {
+                throw new JRRuntimeException(error);
+            }
+            if (result == null) {
+                throw new JRRuntimeException(new JRException("The report fill was cancelled"));
+            }
+        }
+
+        private void awaitDone() {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JRRuntimeException(e);
+                }
+            }
+        }
+    }
+}
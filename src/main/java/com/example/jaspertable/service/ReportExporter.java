@@ -0,0 +1,191 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperPrintManager;
+import net.sf.jasperreports.engine.export.HtmlExporter;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.export.ooxml.JRDocxExporter;
+import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.export.ExporterInput;
+import net.sf.jasperreports.export.SimpleDocxReportConfiguration;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleHtmlExporterOutput;
+import net.sf.jasperreports.export.SimpleHtmlReportConfiguration;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimplePdfExporterConfiguration;
+import net.sf.jasperreports.export.SimplePdfReportConfiguration;
+import net.sf.jasperreports.export.SimpleReportExportConfiguration;
+import net.sf.jasperreports.export.SimpleXlsxReportConfiguration;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports filled reports to the supported {@link ExportFormat}s, writing straight to the given
+ * stream and restricted to the requested pages. PDFs are exported with the {@link PdfProfile} of
+ * the request, or the one configured for the report in {@code jasper.pdf.*}, and with the static
+ * elements of the pages of the templates in {@code jasper.static-layers.reports} drawn from the
+ * {@link StaticLayerCache}.
+ */
+@Component
+@Slf4j
+public class ReportExporter {
+
+    private final ReportProperties.Export properties;
+    private final PdfProfile defaultProfile;
+    private final Map<String, PdfProfile> reportProfiles = new HashMap<>();
+    private final StaticLayerCache staticLayerCache;
+
+    public ReportExporter(ReportProperties properties, StaticLayerCache staticLayerCache) {
+        this.properties = properties.getExport();
+        this.staticLayerCache = staticLayerCache;
+        this.defaultProfile = PdfProfile.of(properties.getPdf().getProfile());
+        properties.getPdf().getReportProfiles().forEach((report, profile) ->
+                reportProfiles.put(TemplateRegistry.normalize(report), PdfProfile.of(profile)));
+    }
+
+    /**
+     * Fills in the PDF profile of export options that do not name one.
+     *
+     * @param file_name the report name
+     * @param options   the export options of the request
+     * @return the options with the requested profile, or the one configured for the report
+     */
+    public ExportOptions resolveProfile(String file_name, ExportOptions options) {
+        if (options.profile() != null) {
+            return options;
+        }
+        PdfProfile profile = reportProfiles.get(TemplateRegistry.normalize(file_name));
+        return options.withProfile(profile != null ? profile : defaultProfile);
+    }
+
+    /**
+     * Checks that the requested pages exist, before anything is written to the response.
+     *
+     * @param prints  the filled parts of the document, in order
+     * @param options the export options
+     * @throws IllegalArgumentException if the first requested page is beyond the end of the document
+     */
+    public void checkPages(List<JasperPrint> prints, ExportOptions options) {
+        int pageCount = pageCount(prints);
+        if (options.firstPage() > 1 && options.firstPage() > pageCount) {
+            throw new IllegalArgumentException("Page " + options.firstPage() + " does not exist, the document has "
+                    + pageCount + " pages");
+        }
+    }
+
+    /**
+     * Exports a filled report. A document filled in several parts is exported as one document with
+     * the parts in order; page ranges can only be applied to a document filled in one part.
+     *
+     * @param prints  the filled parts of the document, in order
+     * @param options the format and pages to export
+     * @param out     the stream to write to; it is not closed
+     * @throws JRException if the export fails
+     * @throws IOException if writing fails
+     */
+    public void export(List<JasperPrint> prints, ExportOptions options, OutputStream out) throws JRException, IOException {
+        if (prints.size() > 1 && !options.isWholeDocument()) {
+            throw new IllegalStateException("Page ranges cannot be exported from a document filled in parts");
+        }
+        checkPages(prints, options);
+        log.debug("Exporting pages {}-{} of {} part(s) as {}", options.firstPage(),
+                options.isBounded() ? options.lastPage() : "end", prints.size(), options.format());
+
+        SimpleExporterInput input = SimpleExporterInput.getInstance(prints);
+        JasperPrint jasperPrint = prints.get(0);
+        switch (options.format()) {
+            case PDF -> {
+                JRPdfExporter exporter = pdfExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+                exporter.setConfiguration(pageRange(new SimplePdfReportConfiguration(), jasperPrint, options));
+                exporter.setConfiguration(pdfConfiguration(options.profile()));
+                exporter.exportReport();
+            }
+            case DOCX -> {
+                JRDocxExporter exporter = new JRDocxExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+                exporter.setConfiguration(pageRange(new SimpleDocxReportConfiguration(), jasperPrint, options));
+                exporter.exportReport();
+            }
+            case XLSX -> {
+                JRXlsxExporter exporter = new JRXlsxExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+                exporter.setConfiguration(pageRange(new SimpleXlsxReportConfiguration(), jasperPrint, options));
+                exporter.exportReport();
+            }
+            case HTML -> {
+                HtmlExporter exporter = new HtmlExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new SimpleHtmlExporterOutput(out, StandardCharsets.UTF_8.name()));
+                SimpleHtmlReportConfiguration configuration = pageRange(new SimpleHtmlReportConfiguration(), jasperPrint, options);
+                // A preview is a single response, so images cannot be served separately
+                configuration.setEmbedImage(true);
+                exporter.setConfiguration(configuration);
+                exporter.exportReport();
+            }
+            case PNG -> {
+                if (jasperPrint.getPages().isEmpty()) {
+                    throw new IllegalArgumentException("The document has no pages");
+                }
+                RenderedImage image = (RenderedImage) JasperPrintManager.printPageToImage(jasperPrint,
+                        options.firstPage() - 1, properties.getPngZoom());
+                ImageIO.write(image, "png", out);
+            }
+        }
+    }
+
+    /**
+     * Exports a whole document as PDF from an input whose items may only become available while the
+     * export runs, see {@link ProgressiveFiller}.
+     *
+     * @param input   the parts of the document, in order
+     * @param profile the PDF profile
+     * @param out     the stream to write to; it is not closed
+     * @throws JRException if the export fails
+     */
+    public void exportPdf(ExporterInput input, PdfProfile profile, OutputStream out) throws JRException {
+        JRPdfExporter exporter = pdfExporter();
+        exporter.setExporterInput(input);
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+        exporter.setConfiguration(pdfConfiguration(profile));
+        exporter.exportReport();
+    }
+
+    private JRPdfExporter pdfExporter() {
+        return staticLayerCache.hasLayers() ? new StaticLayerPdfExporter(staticLayerCache) : new JRPdfExporter();
+    }
+
+    private SimplePdfExporterConfiguration pdfConfiguration(PdfProfile profile) {
+        SimplePdfExporterConfiguration configuration = new SimplePdfExporterConfiguration();
+        configuration.setCompressed((profile != null ? profile : defaultProfile).isCompressed());
+        return configuration;
+    }
+
+    private static int pageCount(List<JasperPrint> prints) {
+        return prints.stream().mapToInt(print -> print.getPages().size()).sum();
+    }
+
+    private static <C extends SimpleReportExportConfiguration> C pageRange(C configuration, JasperPrint jasperPrint,
+                                                                         ExportOptions options) {
+        int pageCount = jasperPrint.getPages().size();
+        if (pageCount > 0 && !options.isWholeDocument()) {
+            configuration.setStartPageIndex(options.firstPage() - 1);
+            configuration.setEndPageIndex(Math.min(options.lastPage(), pageCount) - 1);
+        }
+        return configuration;
+    }
+}
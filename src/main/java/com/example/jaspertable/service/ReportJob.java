@@ -0,0 +1,76 @@
+package com.example.jaspertable.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A report rendered in the background by the {@link ReportJobService}.
+ * <p>
+ * The request data is released once the job starts and the rendered PDF is held until the job
+ * expires, so a job only keeps what it still needs.
+ */
+@Getter
+public class ReportJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED,
+        /** Not rendered because the service was saturated; the client may submit it again. */
+        REJECTED
+    }
+
+    private final String id;
+    private final String fileName;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant completedAt;
+    private volatile String error;
+    private volatile long retryAfterSeconds;
+    private volatile byte[] result;
+
+    @Getter(AccessLevel.NONE)
+    private volatile LinkedHashMap<String, List<Map<String, Object>>> data;
+
+    ReportJob(String id, String fileName, LinkedHashMap<String, List<Map<String, Object>>> data) {
+        this.id = id;
+        this.fileName = fileName;
+        this.data = data;
+    }
+
+    LinkedHashMap<String, List<Map<String, Object>>> start() {
+        LinkedHashMap<String, List<Map<String, Object>>> jobData = data;
+        data = null;
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+        return jobData;
+    }
+
+    void complete(byte[] pdf) {
+        result = pdf;
+        completedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void fail(String message) {
+        error = message;
+        completedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    void reject(String message, long retryAfterSeconds) {
+        error = message;
+        this.retryAfterSeconds = retryAfterSeconds;
+        completedAt = Instant.now();
+        status = Status.REJECTED;
+    }
+
+    boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.REJECTED;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.InvalidPayloadException;
+import com.example.jaspertable.exception.ReportGenerationException;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders reports in the background so that large documents do not hold an HTTP request open.
+ * <p>
+ * Jobs run on a fixed pool of workers with a bounded queue. When the queue is full new jobs are
+ * rejected with a {@link TooManyRequestsException} instead of piling up. A job that cannot get a
+ * render slot or template permit in time is marked {@link ReportJob.Status#REJECTED} rather than
+ * failed, so that the client knows to submit it again later. Finished jobs are kept
+ * for polling until their TTL expires, or until the PDFs of finished jobs exceed
+ * {@code jasper.jobs.max-retained-size}, in which case the oldest finished jobs are evicted first.
+ */
+@Service
+@Slf4j
+public class ReportJobService {
+
+    private final JReportService jReportService;
+    private final TemplateSchemaService templateSchemaService;
+    private final ReportProperties.Jobs properties;
+    private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    public ReportJobService(JReportService jReportService, TemplateSchemaService templateSchemaService,
+                            ReportProperties properties) {
+        this.jReportService = jReportService;
+        this.templateSchemaService = templateSchemaService;
+        this.properties = properties.getJobs();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                this.properties.getWorkers(), this.properties.getWorkers(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.properties.getQueueCapacity()),
+                runnable -> new Thread(runnable, "report-job-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a report for background rendering. The data is validated before it is queued.
+     *
+     * @param fileName the name of the report
+     * @param data     the report data, keyed by template name
+     * @return the queued job
+     * @throws InvalidPayloadException   if the data does not match the templates
+     * @throws ReportGenerationException if a template cannot be compiled
+     * @throws TooManyRequestsException  if the job queue is full
+     */
+    public ReportJob submit(String fileName, LinkedHashMap<String, List<Map<String, Object>>> data) {
+        try {
+            templateSchemaService.validate(data);
+        } catch (JRException e) {
+            throw ReportGenerationException.forFile(fileName, e);
+        }
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), fileName, data);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            log.warn("Report job queue is full ({} queued), rejecting job for file: {}", executor.getQueue().size(), fileName);
+            throw new TooManyRequestsException("Report job queue is full, retry later",
+                    properties.getRetryAfter().toSeconds());
+        }
+        log.info("Queued report job {} for file: {}", job.getId(), fileName);
+        return job;
+    }
+
+    /**
+     * Returns the job with the given id.
+     *
+     * @param id the job id
+     * @return the job, or empty if it never existed or has expired
+     */
+    public Optional<ReportJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Removes finished jobs whose TTL has passed.
+     */
+    @Scheduled(fixedDelayString = "${jasper.jobs.eviction-interval:PT1M}")
+    public void evictExpired() {
+        Instant expiry = Instant.now().minus(properties.getTtl());
+        int evicted = 0;
+        for (ReportJob job : jobs.values()) {
+            if (job.isFinished() && job.getCompletedAt().isBefore(expiry) && jobs.remove(job.getId(), job)) {
+                release(job);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} expired report jobs", evicted);
+        }
+    }
+
+    /**
+     * Evicts the oldest finished jobs until the PDFs still held fit into
+     * {@code jasper.jobs.max-retained-size}.
+     */
+    private synchronized void evictOverLimit() {
+        long limit = properties.getMaxRetainedSize().toBytes();
+        if (retainedBytes.get() <= limit) {
+            return;
+        }
+        List<ReportJob> finished = jobs.values().stream()
+                .filter(ReportJob::isFinished)
+                .sorted(Comparator.comparing(ReportJob::getCompletedAt))
+                .toList();
+        for (ReportJob job : finished) {
+            if (retainedBytes.get() <= limit) {
+                break;
+            }
+            if (jobs.remove(job.getId(), job)) {
+                release(job);
+                log.info("Evicted report job {} before its TTL, finished jobs hold more than {}", job.getId(),
+                        properties.getMaxRetainedSize());
+            }
+        }
+    }
+
+    private void release(ReportJob job) {
+        byte[] result = job.getResult();
+        if (result != null) {
+            retainedBytes.addAndGet(-result.length);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ReportJob job) {
+        LinkedHashMap<String, List<Map<String, Object>>> data = job.start();
+        log.info("Running report job {} for file: {}", job.getId(), job.getFileName());
+        try {
+            byte[] pdf = jReportService.generatePdf(job.getFileName(), data);
+            retainedBytes.addAndGet(pdf.length);
+            job.complete(pdf);
+            log.info("Report job {} completed, {} bytes", job.getId(), pdf.length);
+            evictOverLimit();
+        } catch (TooManyRequestsException e) {
+            log.warn("Report job {} rejected, the service is saturated: {}", job.getId(), e.getMessage());
+            job.reject(e.getMessage(), e.getRetryAfterSeconds());
+        } catch (Exception e) {
+            log.error("Report job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.jaspertable.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the report pipeline, tagged by template so that latency and volume can be
+ * tracked per template:
+ * <ul>
+ *     <li>{@code report.phase} - timer of the {@code load}, {@code compile}, {@code fill} and
+ *     {@code export} phases, tagged with {@code template}, {@code phase} and {@code outcome}</li>
+ *     <li>{@code report.output.pages} and {@code report.output.bytes} - size of rendered documents,
+ *     tagged with {@code template} and {@code format}</li>
+ *     <li>{@code report.pdf.size} and {@code report.pdf.export} - size and export time of PDFs,
+ *     tagged with {@code template} and {@code profile}</li>
+ *     <li>{@code report.input.rows} and {@code report.input.image.bytes} - size of the request data,
+ *     tagged with {@code template}</li>
+ *     <li>{@code report.errors} - failed requests, tagged with {@code template}, {@code exception}
+ *     and {@code status}</li>
+ *     <li>{@code report.request.cpu} and {@code report.request.allocated} - CPU time and heap
+ *     allocation of the request thread, tagged with {@code template}</li>
+ * </ul>
+ * The {@code template} tag only carries names of templates that were resolved, so that request
+ * data with arbitrary keys cannot create new time series; anything else is tagged
+ * {@value #UNKNOWN}. A document is tagged with its first template group.
+ */
+@Component
+public class ReportMetrics {
+
+    /** Tag value for requests that did not resolve a template. */
+    public static final String UNKNOWN = "unknown";
+
+    private static final String TEMPLATE_ATTRIBUTE = ReportMetrics.class.getName() + ".template";
+
+    private final MeterRegistry meterRegistry;
+
+    public ReportMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * A phase of the pipeline that is timed.
+     */
+    @FunctionalInterface
+    public interface Phase<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Runs and times a phase.
+     *
+     * @param phase    the phase name
+     * @param template the template tag
+     * @param body     the phase
+     * @return the result of the phase
+     * @throws E if the phase fails; it is recorded with outcome {@code error}
+     */
+    public <T, E extends Exception> T time(String phase, String template, Phase<T, E> body) throws E {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = body.run();
+            success = true;
+            return result;
+        } finally {
+            recordPhase(phase, template, success, start);
+        }
+    }
+
+    /**
+     * Records a phase that was timed by the caller.
+     *
+     * @param phase      the phase name
+     * @param template   the template tag
+     * @param success    whether the phase completed
+     * @param startNanos the {@link System#nanoTime()} at the start of the phase
+     */
+    public void recordPhase(String phase, String template, boolean success, long startNanos) {
+        Timer.builder("report.phase")
+                .description("Time spent in a phase of report generation")
+                .tag("phase", phase)
+                .tag("template", template)
+                .tag("outcome", success ? "success" : "error")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a rendered document.
+     *
+     * @param template the template tag
+     * @param format   the export format
+     * @param pages    the number of pages
+     * @param bytes    the size of the exported document
+     */
+    public void recordDocument(String template, ExportFormat format, long pages, long bytes) {
+        Counter.builder("report.output.pages")
+                .description("Pages of rendered documents")
+                .tag("template", template)
+                .tag("format", format.getExtension())
+                .register(meterRegistry)
+                .increment(pages);
+        Counter.builder("report.output.bytes")
+                .description("Size of rendered documents")
+                .baseUnit("bytes")
+                .tag("template", template)
+                .tag("format", format.getExtension())
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Records the size of a PDF and the time its export took, by profile.
+     *
+     * @param template    the template tag
+     * @param profile     the PDF profile
+     * @param bytes       the size of the exported document
+     * @param exportNanos the export time in nanoseconds, or a negative value if the export overlapped
+     *                    the fill and its time is not comparable
+     */
+    public void recordPdf(String template, PdfProfile profile, long bytes, long exportNanos) {
+        DistributionSummary.builder("report.pdf.size")
+                .description("Size of exported PDFs")
+                .baseUnit("bytes")
+                .tag("template", template)
+                .tag("profile", profile.getName())
+                .register(meterRegistry)
+                .record(bytes);
+        if (exportNanos >= 0) {
+            Timer.builder("report.pdf.export")
+                    .description("Time spent exporting PDFs")
+                    .tag("template", template)
+                    .tag("profile", profile.getName())
+                    .register(meterRegistry)
+                    .record(exportNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the rows of a template group.
+     *
+     * @param template the template tag
+     * @param rows     the number of rows
+     */
+    public void recordRows(String template, long rows) {
+        Counter.builder("report.input.rows")
+                .description("Data rows received")
+                .tag("template", template)
+                .register(meterRegistry)
+                .increment(rows);
+    }
+
+    /**
+     * Records base64-encoded image data received for a template.
+     *
+     * @param template the template tag
+     * @param bytes    the size of the encoded image
+     */
+    public void recordImageBytes(String template, long bytes) {
+        Counter.builder("report.input.image.bytes")
+                .description("Base64-encoded image data received")
+                .baseUnit("bytes")
+                .tag("template", template)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Records a request that failed with a mapped exception.
+     *
+     * @param template the template tag, see {@link #requestTemplate(HttpServletRequest)}
+     * @param ex       the exception
+     * @param status   the response status
+     */
+    public void recordError(String template, Throwable ex, int status) {
+        Counter.builder("report.errors")
+                .description("Report requests that failed")
+                .tag("template", template)
+                .tag("exception", ex.getClass().getSimpleName())
+                .tag("status", String.valueOf(status))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Records the resources a request used on its thread.
+     *
+     * @param template       the template tag
+     * @param cpuNanos       the CPU time in nanoseconds, or a negative value if unknown
+     * @param allocatedBytes the heap allocation in bytes, or a negative value if unknown
+     */
+    public void recordUsage(String template, long cpuNanos, long allocatedBytes) {
+        if (cpuNanos >= 0) {
+            Timer.builder("report.request.cpu")
+                    .description("CPU time of the request thread")
+                    .tag("template", template)
+                    .register(meterRegistry)
+                    .record(cpuNanos, TimeUnit.NANOSECONDS);
+        }
+        if (allocatedBytes >= 0) {
+            DistributionSummary.builder("report.request.allocated")
+                    .description("Heap allocated by the request thread")
+                    .baseUnit("bytes")
+                    .tag("template", template)
+                    .register(meterRegistry)
+                    .record(allocatedBytes);
+        }
+    }
+
+    /**
+     * Remembers the template of the current HTTP request, so that errors mapped later can be
+     * tagged with it. Does nothing outside of a request, e.g. on batch or job threads.
+     *
+     * @param template the resolved template
+     */
+    public static void tagRequest(String template) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(TEMPLATE_ATTRIBUTE, template, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * Returns the template remembered for the current HTTP request.
+     *
+     * @return the template, or {@value #UNKNOWN} outside of a request or if none was resolved
+     */
+    public static String currentTemplate() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object template = attributes != null
+                ? attributes.getAttribute(TEMPLATE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) : null;
+        return template != null ? template.toString() : UNKNOWN;
+    }
+
+    /**
+     * Returns the template remembered for a request.
+     *
+     * @param request the HTTP request
+     * @return the template, or {@value #UNKNOWN} if none was resolved
+     */
+    public static String requestTemplate(HttpServletRequest request) {
+        Object template = request.getAttribute(TEMPLATE_ATTRIBUTE);
+        return template != null ? template.toString() : UNKNOWN;
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Content-addressed cache of rendered PDFs.
+ * <p>
+ * A document is identified by a SHA-256 over the report name, the PDF profile, the fingerprints of
+ * the master and every template it uses and the digest of the request body, as computed by the
+ * {@link ReportPayloadReader} while it read the body. Data that was not read from a request body,
+ * such as jobs and batch documents, is hashed with object keys in sorted order instead. The same key is
+ * used as the {@code ETag} of the response; since documents are rendered by {@code POST}, which
+ * HTTP does not make conditional, a matching {@code If-None-Match} is only answered with
+ * {@code 304 Not Modified} if {@code jasper.cache.conditional-post} is enabled. Entries are weighed by their size and evicted by
+ * Caffeine's size-bounded W-TinyLFU policy. Concurrent requests for the same key share a single
+ * render: the first caller renders, the others wait for its result. When the {@link SharedCache}
+ * is enabled, a document missing here is looked up there before it is rendered, and every rendered
+ * document is written there, so that instances behind a load balancer render each document once.
+ * Lookups are counted in {@code report.cache.requests}, tagged {@code hit}, {@code join},
+ * {@code shared} or {@code miss}.
+ */
+@Component
+@Slf4j
+public class ReportOutputCache {
+
+    private final ReportProperties.Cache properties;
+    private final TemplateRegistry templateRegistry;
+    private final SharedCache sharedCache;
+    private final ObjectMapper canonicalMapper;
+    private final AsyncCache<String, byte[]> cache;
+    private final Counter hits;
+    private final Counter joins;
+    private final Counter sharedHits;
+    private final Counter misses;
+
+    public ReportOutputCache(ReportProperties properties, TemplateRegistry templateRegistry, SharedCache sharedCache,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties.getCache();
+        this.templateRegistry = templateRegistry;
+        this.sharedCache = sharedCache;
+        this.canonicalMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(this.properties.getMaxSize().toBytes())
+                .<String, byte[]>weigher((key, pdf) -> pdf.length)
+                .expireAfterWrite(this.properties.getTtl())
+                .buildAsync();
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.joins = requestCounter(meterRegistry, "join");
+        this.sharedHits = requestCounter(meterRegistry, "shared");
+        this.misses = requestCounter(meterRegistry, "miss");
+        Gauge.builder("report.cache.size", cache, c -> c.synchronous().policy().eviction()
+                        .flatMap(eviction -> eviction.weightedSize().stream().boxed().findFirst()).orElse(0L))
+                .description("Total size of cached PDFs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Computes the cache key of a document from its data.
+     *
+     * @param file_name the report name
+     * @param data      the report data, keyed by template name
+     * @param profile   the PDF profile the document is exported with
+     * @return the key, or {@code null} if caching is disabled or a template cannot be resolved, in
+     * which case the caller should render without the cache and report the error from there
+     */
+    public String key(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, PdfProfile profile) {
+        return key(file_name, data, profile, null);
+    }
+
+    /**
+     * Computes the cache key of a document.
+     *
+     * @param file_name  the report name
+     * @param data       the report data, keyed by template name
+     * @param profile    the PDF profile the document is exported with
+     * @param bodyDigest the digest of the request body the data was read from; if {@code null} the
+     *                   rows are hashed in canonical order instead
+     * @return the key, or {@code null} if caching is disabled or a template cannot be resolved, in
+     * which case the caller should render without the cache and report the error from there
+     */
+    public String key(String file_name, LinkedHashMap<String, List<Map<String, Object>>> data, PdfProfile profile,
+                      byte[] bodyDigest) {
+        if (!properties.isEnabled() || data == null || data.isEmpty()) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, TemplateRegistry.normalize(file_name));
+            update(digest, profile.getName());
+            update(digest, templateRegistry.resolve("master").fingerprint());
+            if (bodyDigest != null) {
+                digest.update(bodyDigest);
+            }
+            // Section order matters for the document, so only the rows are written in canonical order
+            for (Map.Entry<String, List<Map<String, Object>>> section : data.entrySet()) {
+                String templateName = TemplateRegistry.normalize(section.getKey());
+                update(digest, templateName);
+                update(digest, templateRegistry.resolve(templateName).fingerprint());
+                if (bodyDigest == null) {
+                    canonicalMapper.writeValue(new DigestOutputStream(OutputStream.nullOutputStream(), digest), section.getValue());
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JRException e) {
+            log.debug("Not caching report '{}', a template could not be resolved: {}", file_name, e.getMessage());
+            return null;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.warn("Failed to compute cache key for report '{}': {}", file_name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached document with the given key, rendering it if absent. If the same document
+     * is already being rendered by another request, waits for that render instead of starting a
+     * second one.
+     *
+     * @param key      the key from {@link #key}
+     * @param renderer renders the document on a cache miss
+     * @return the document
+     * @throws IOException if rendering fails, also when it failed in the request that was waited for
+     */
+    public byte[] get(String key, Renderer renderer) throws IOException {
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = cache.asMap().putIfAbsent(key, created);
+        if (existing != null) {
+            boolean done = existing.isDone();
+            (done ? hits : joins).increment();
+            log.debug("Report cache {} for key {}", done ? "hit" : "join", key);
+            return await(existing);
+        }
+
+        byte[] shared = readShared(key);
+        if (shared != null) {
+            created.complete(shared);
+            return shared;
+        }
+
+        misses.increment();
+        log.debug("Report cache miss for key {}", key);
+        try {
+            byte[] pdf = renderer.render();
+            created.complete(pdf);
+            if (pdf.length > properties.getMaxEntrySize().toBytes()) {
+                cache.asMap().remove(key, created);
+            } else {
+                sharedCache.write(SharedCache.Kind.REPORT, key, pdf);
+            }
+            return pdf;
+        } catch (IOException | RuntimeException | Error e) {
+            // Failed futures are dropped by the cache, so the next request renders again
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a cached document without rendering it, for callers that render in a way the cache
+     * cannot wait for, e.g. while streaming it to the client.
+     *
+     * @param key the key from {@link #key}
+     * @return the document, or {@code null} if it is not cached or still being rendered
+     */
+    public byte[] getIfPresent(String key) {
+        CompletableFuture<byte[]> existing = cache.asMap().get(key);
+        if (existing != null && existing.isDone() && !existing.isCompletedExceptionally()) {
+            hits.increment();
+            log.debug("Report cache hit for key {}", key);
+            return existing.join();
+        }
+        byte[] shared = readShared(key);
+        if (shared != null) {
+            cache.put(key, CompletableFuture.completedFuture(shared));
+            return shared;
+        }
+        misses.increment();
+        log.debug("Report cache miss for key {}", key);
+        return null;
+    }
+
+    /**
+     * Caches a document rendered outside of {@link #get}, also in the shared cache. Documents
+     * larger than {@code jasper.cache.max-entry-size} are not kept.
+     *
+     * @param key the key from {@link #key}
+     * @param pdf the document
+     */
+    public void put(String key, byte[] pdf) {
+        if (pdf.length <= properties.getMaxEntrySize().toBytes()) {
+            cache.put(key, CompletableFuture.completedFuture(pdf));
+            sharedCache.write(SharedCache.Kind.REPORT, key, pdf);
+        }
+    }
+
+    /**
+     * Returns the {@code ETag} header value for a cache key.
+     *
+     * @param key the cache key
+     * @return the quoted entity tag
+     */
+    public static String etag(String key) {
+        return "\"" + key + "\"";
+    }
+
+    /**
+     * Checks whether a render request can be answered with {@code 304 Not Modified}, which is only
+     * done if {@code jasper.cache.conditional-post} is enabled.
+     *
+     * @param ifNoneMatch the {@code If-None-Match} request header, may be {@code null}
+     * @param etag        the entity tag of the current document
+     * @return {@code true} if the client already has the document and conditional POSTs are enabled
+     */
+    public boolean isNotModified(String ifNoneMatch, String etag) {
+        return properties.isConditionalPost() && matches(ifNoneMatch, etag);
+    }
+
+    /**
+     * Checks an {@code If-None-Match} request header against an entity tag.
+     *
+     * @param ifNoneMatch the header value, may be {@code null}
+     * @param etag        the entity tag of the current document
+     * @return {@code true} if the client already has the document
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] readShared(String key) {
+        byte[] pdf = sharedCache.read(SharedCache.Kind.REPORT, key);
+        if (pdf != null) {
+            sharedHits.increment();
+            log.debug("Report cache shared hit for key {}", key);
+        }
+        return pdf;
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("report.cache.requests")
+                .description("Rendered report cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a concurrent render", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Concurrent render failed", cause);
+        }
+    }
+
+    /**
+     * Renders a document on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render() throws IOException;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.jaspertable.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads report data from request bodies: JSON, or a binary format or multipart request as an
+ * alternative to JSON with base64 images. The bytes are digested while they are read, so that the
+ * {@link ReportOutputCache} can key the document by the body instead of serializing the data again.
+ * <p>
+ * CBOR and Smile bodies have the same structure as JSON, but images can be sent as byte strings
+ * instead of base64 text. A multipart request carries the report data in a part named
+ * {@value #DATA_PART}, as JSON, CBOR or Smile according to the content type of the part, and
+ * every image as a binary part of its own. A row refers to an image part by its name, e.g.
+ * {@code "photo": "cid:photo-1"}; the value is replaced by the bytes of the part, and rows
+ * referring to the same part share one byte array.
+ */
+@Component
+@Slf4j
+public class ReportPayloadReader {
+
+    /** Media type of Smile bodies, as registered by Jackson. */
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    /** Name of the part holding the report data in a multipart request. */
+    public static final String DATA_PART = "data";
+
+    /** Prefix of a row value referring to a part of a multipart request. */
+    public static final String PART_REFERENCE_PREFIX = "cid:";
+
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+    private static final TypeReference<LinkedHashMap<String, List<Map<String, Object>>>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private final ObjectMapper smileMapper = new SmileMapper();
+
+    public ReportPayloadReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the mapper for report data of a content type.
+     *
+     * @param contentType the content type of the data, JSON if {@code null}
+     * @return the CBOR or Smile mapper for those formats, otherwise the JSON mapper
+     * @throws IllegalArgumentException if the content type is malformed
+     */
+    public ObjectMapper mapperFor(String contentType) {
+        if (contentType == null) {
+            return objectMapper;
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new IllegalArgumentException("Invalid content type: " + contentType, e);
+        }
+        if (MediaType.APPLICATION_CBOR.includes(mediaType)) {
+            return cborMapper;
+        }
+        if (APPLICATION_SMILE.includes(mediaType)) {
+            return smileMapper;
+        }
+        return objectMapper;
+    }
+
+    /**
+     * Reads the report data of a request body.
+     *
+     * @param body        the request body
+     * @param contentType the content type of the body, JSON, CBOR or Smile; JSON if {@code null}
+     * @return the report data, keyed by template name, and the digest of the body
+     * @throws IllegalArgumentException if the body is malformed or the content type is invalid
+     * @throws IOException              if the body cannot be read
+     */
+    public Payload read(InputStream body, String contentType) throws IOException {
+        ObjectMapper mapper = mapperFor(contentType);
+        MessageDigest digest = newDigest(mapper);
+        LinkedHashMap<String, List<Map<String, Object>>> data;
+        try (InputStream in = new DigestInputStream(body, digest)) {
+            data = readData(mapper, in);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON request: " + e.getOriginalMessage(), e);
+        }
+        return new Payload(data != null ? data : new LinkedHashMap<>(), digest.digest());
+    }
+
+    /**
+     * Reads the report data of a multipart request and resolves its references to image parts.
+     *
+     * @param request the multipart request
+     * @return the report data, keyed by template name, with referenced parts replaced by their
+     * bytes, and the digest of the data part and the referenced parts
+     * @throws IllegalArgumentException if the data part is missing or malformed, or refers to a missing part
+     * @throws IOException              if the request cannot be read
+     */
+    public Payload readMultipart(HttpServletRequest request) throws IOException {
+        Part dataPart = part(request, DATA_PART);
+        if (dataPart == null) {
+            throw new IllegalArgumentException("Multipart request has no '" + DATA_PART + "' part");
+        }
+        ObjectMapper mapper = mapperFor(dataPart.getContentType());
+        MessageDigest digest = newDigest(mapper);
+        LinkedHashMap<String, List<Map<String, Object>>> data;
+        try (InputStream in = new DigestInputStream(dataPart.getInputStream(), digest)) {
+            data = readData(mapper, in);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed '" + DATA_PART + "' part: " + e.getOriginalMessage(), e);
+        }
+        if (data == null) {
+            return new Payload(new LinkedHashMap<>(), digest.digest());
+        }
+
+        Map<String, byte[]> parts = new HashMap<>();
+        for (Map.Entry<String, List<Map<String, Object>>> section : data.entrySet()) {
+            List<Map<String, Object>> rows = section.getValue();
+            for (int index = 0; rows != null && index < rows.size(); index++) {
+                Map<String, Object> row = rows.get(index);
+                if (row == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Object> value : row.entrySet()) {
+                    if (!(value.getValue() instanceof String reference) || !reference.startsWith(PART_REFERENCE_PREFIX)) {
+                        continue;
+                    }
+                    String name = reference.substring(PART_REFERENCE_PREFIX.length());
+                    byte[] content = parts.get(name);
+                    if (content == null) {
+                        Part part = part(request, name);
+                        if (part == null) {
+                            throw new IllegalArgumentException("Part '" + name + "' referenced by "
+                                    + section.getKey() + "[" + index + "]." + value.getKey() + " does not exist");
+                        }
+                        try (InputStream in = part.getInputStream()) {
+                            content = in.readAllBytes();
+                        }
+                        parts.put(name, content);
+                        // Parts are digested once each, in the order they are first referenced
+                        digest.update(name.getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                        digest.update(content);
+                    }
+                    value.setValue(content);
+                }
+            }
+        }
+        log.debug("Read multipart report data with {} referenced parts", parts.size());
+        return new Payload(data, digest.digest());
+    }
+
+    private static LinkedHashMap<String, List<Map<String, Object>>> readData(ObjectMapper mapper, InputStream in)
+            throws IOException {
+        LinkedHashMap<String, List<Map<String, Object>>> data = mapper.readValue(CloseShieldInputStream.wrap(in), PAYLOAD_TYPE);
+        // The parser stops after the root value; how far it read depends on buffering, so the rest is digested too
+        in.transferTo(OutputStream.nullOutputStream());
+        return data;
+    }
+
+    private static MessageDigest newDigest(ObjectMapper mapper) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // The same bytes mean different data in different formats
+            digest.update(mapper.getFactory().getFormatName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Report data read from a request.
+     *
+     * @param data   the report data, keyed by template name
+     * @param digest the SHA-256 of the bytes the data was read from
+     */
+    public record Payload(LinkedHashMap<String, List<Map<String, Object>>> data, byte[] digest) {
+    }
+
+    private static Part part(HttpServletRequest request, String name) throws IOException {
+        try {
+            return request.getPart(name);
+        } catch (ServletException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed multipart request: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.fill.JRAbstractLRUVirtualizer;
+import net.sf.jasperreports.engine.fill.JRGzipVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Attaches a JasperReports virtualizer to fills that are expected to be large, so that filled pages
+ * are swapped to disk or compressed instead of all being held on the heap until export.
+ * <p>
+ * Small fills stay on the plain in-memory path. The virtualizer and its swap directory live until
+ * the {@link Session} is closed, which must happen after the export has finished.
+ */
+@Component
+@Slf4j
+public class ReportVirtualizer {
+
+    private static final int SWAP_BLOCK_SIZE = 4096;
+    private static final int SWAP_MIN_GROW_COUNT = 256;
+
+    private final ReportProperties.Virtualizer properties;
+
+    public ReportVirtualizer(ReportProperties properties) {
+        this.properties = properties.getVirtualizer();
+    }
+
+    /**
+     * Opens a virtualization session for a fill with the given estimated size.
+     *
+     * @param fileName     the name of the report, for logging
+     * @param rows         the number of data rows, or {@code -1} if unknown
+     * @param payloadBytes the estimated size of the report data in bytes, or {@code -1} if unknown
+     * @return a session; virtualization is only active if a threshold is exceeded
+     * @throws IOException if the swap directory cannot be created
+     */
+    public Session open(String fileName, long rows, long payloadBytes) throws IOException {
+        boolean large = rows >= properties.getRowThreshold()
+                || payloadBytes >= properties.getPayloadThreshold().toBytes();
+        if (!properties.isEnabled() || !large) {
+            return new Session(null, null);
+        }
+
+        if (properties.getType() == ReportProperties.Virtualizer.Type.GZIP) {
+            log.info("Using gzip virtualizer for '{}' ({} rows, {} bytes)", fileName, rows, payloadBytes);
+            return new Session(new JRGzipVirtualizer(properties.getMaxPagesInMemory()), null);
+        }
+
+        Path parent = StringUtils.hasText(properties.getSwapDir())
+                ? Paths.get(properties.getSwapDir())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "jasper-swap");
+        Files.createDirectories(parent);
+        Path swapDir = Files.createTempDirectory(parent, "fill-");
+        JRSwapFile swapFile = new JRSwapFile(swapDir.toString(), SWAP_BLOCK_SIZE, SWAP_MIN_GROW_COUNT);
+        log.info("Using swap file virtualizer for '{}' in {} ({} rows, {} bytes)", fileName, swapDir, rows, payloadBytes);
+        return new Session(new JRSwapFileVirtualizer(properties.getMaxPagesInMemory(), swapFile, true), swapDir);
+    }
+
+    /**
+     * Estimates the heap footprint of request data by summing up string and binary lengths.
+     *
+     * @param value the report data or a part of it
+     * @return the estimated size in bytes
+     */
+    public static long estimatePayloadBytes(Object value) {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimatePayloadBytes(entry.getKey()) + estimatePayloadBytes(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object element : (Collection<?>) value) {
+                size += estimatePayloadBytes(element);
+            }
+            return size;
+        }
+        return value == null ? 0 : 16;
+    }
+
+    /**
+     * The virtualizer of a single fill and export.
+     */
+    public static class Session implements AutoCloseable {
+
+        private final JRAbstractLRUVirtualizer virtualizer;
+        private final Path swapDir;
+
+        private Session(JRAbstractLRUVirtualizer virtualizer, Path swapDir) {
+            this.virtualizer = virtualizer;
+            this.swapDir = swapDir;
+        }
+
+        /**
+         * Returns whether pages of this fill are virtualized.
+         *
+         * @return {@code true} if a virtualizer is attached
+         */
+        public boolean isActive() {
+            return virtualizer != null;
+        }
+
+        /**
+         * Registers the virtualizer as fill parameter; subreports inherit it from the master.
+         *
+         * @param parameters the fill parameters
+         */
+        public void applyTo(Map<String, Object> parameters) {
+            if (virtualizer != null) {
+                parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            }
+        }
+
+        /**
+         * Marks the filled pages read-only so the export does not write them back to the store.
+         */
+        public void fillFinished() {
+            if (virtualizer != null) {
+                virtualizer.setReadOnly(true);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (virtualizer == null) {
+                return;
+            }
+            virtualizer.cleanup();
+            if (swapDir != null) {
+                try {
+                    FileSystemUtils.deleteRecursively(swapDir);
+                } catch (IOException e) {
+                    log.warn("Failed to delete swap directory '{}': {}", swapDir, e.getMessage());
+                }
+            }
+        }
+    }
+}
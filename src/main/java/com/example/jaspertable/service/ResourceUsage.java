@@ -0,0 +1,61 @@
+package com.example.jaspertable.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time and heap allocation of the current thread since the snapshot was taken. Only work done
+ * on the calling thread is counted; fills run on other threads, e.g. book groups, are not.
+ * <p>
+ * Either figure is {@code -1} when the JVM does not support measuring it.
+ */
+final class ResourceUsage {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean HOTSPOT_THREADS =
+            THREADS instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) THREADS : null;
+
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+
+    private ResourceUsage(long startCpuNanos, long startAllocatedBytes) {
+        this.startCpuNanos = startCpuNanos;
+        this.startAllocatedBytes = startAllocatedBytes;
+    }
+
+    /**
+     * Takes a snapshot of the current thread.
+     *
+     * @return the snapshot
+     */
+    static ResourceUsage start() {
+        return new ResourceUsage(currentCpuNanos(), currentAllocatedBytes());
+    }
+
+    /**
+     * @return CPU time used by the current thread since the snapshot, in nanoseconds, or {@code -1}
+     */
+    long cpuNanos() {
+        long now = currentCpuNanos();
+        return now < 0 || startCpuNanos < 0 ? -1 : now - startCpuNanos;
+    }
+
+    /**
+     * @return bytes allocated by the current thread since the snapshot, or {@code -1}
+     */
+    long allocatedBytes() {
+        long now = currentAllocatedBytes();
+        return now < 0 || startAllocatedBytes < 0 ? -1 : now - startAllocatedBytes;
+    }
+
+    private static long currentCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()
+                ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentAllocatedBytes() {
+        return HOTSPOT_THREADS != null && HOTSPOT_THREADS.isThreadAllocatedMemorySupported()
+                && HOTSPOT_THREADS.isThreadAllocatedMemoryEnabled()
+                ? HOTSPOT_THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+}
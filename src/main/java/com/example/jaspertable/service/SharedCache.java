@@ -0,0 +1,199 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Second-level cache of compiled templates and rendered PDFs in a directory that several instances
+ * share, e.g. a volume mounted into every replica behind the load balancer.
+ * <p>
+ * Every entry is a file {@code <dir>/<kind>/<xx>/<key><extension>}, where {@code xx} are the first
+ * two characters of the key. Entries are content-addressed, so instances never write different
+ * content under the same key and need no locking: an entry is written to a temporary file in its
+ * final directory and renamed into place atomically, which makes it visible to other processes only
+ * once it is complete, and a concurrent write of the same entry merely replaces it with identical
+ * bytes. An entry that disappears while it is being read, because another instance deleted it, is
+ * treated as a miss.
+ * <p>
+ * Rendered PDFs expire {@code jasper.shared-cache.ttl} after they were written. Compiled templates
+ * expire as long after they were last read, so that the templates in use are kept. Expired entries,
+ * and temporary files left behind by a crashed instance, are deleted periodically by every instance.
+ */
+@Component
+@Slf4j
+public class SharedCache {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9A-Za-z][0-9A-Za-z._-]{1,127}");
+    private static final String TEMP_PREFIX = ".";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The kinds of entries, each kept in a directory of its own.
+     */
+    public enum Kind {
+        TEMPLATE("templates", ".jasper"),
+        REPORT("reports", ".pdf");
+
+        private final String directory;
+        private final String extension;
+
+        Kind(String directory, String extension) {
+            this.directory = directory;
+            this.extension = extension;
+        }
+    }
+
+    private final ReportProperties.SharedCache properties;
+    private final Path root;
+
+    public SharedCache(ReportProperties properties) {
+        this.properties = properties.getSharedCache();
+        this.root = StringUtils.hasText(this.properties.getDir())
+                ? Paths.get(this.properties.getDir())
+                : Paths.get(System.getProperty("java.io.tmpdir"), "report-cache");
+    }
+
+    /**
+     * Returns whether the shared cache is used.
+     *
+     * @return {@code true} if the shared cache is enabled
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param kind the kind of entry
+     * @param key  the content-addressed key of the entry
+     * @return the content, or {@code null} if the cache is disabled, or the entry is absent, expired
+     * or cannot be read
+     */
+    public byte[] read(Kind kind, String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Path file = file(kind, key);
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(file);
+            if (isExpired(lastModified.toInstant())) {
+                return null;
+            }
+            byte[] content = Files.readAllBytes(file);
+            if (kind == Kind.TEMPLATE && lastModified.toInstant().plus(properties.getTtl().dividedBy(2)).isBefore(Instant.now())) {
+                // Touch templates in use at most once per half TTL to keep them from expiring
+                Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            }
+            log.debug("Shared cache hit for {} {}", kind, key);
+            return content;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read {} {} from the shared cache: {}", kind, key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, replacing an existing one with the same key. The entry becomes visible to
+     * other instances only once it is complete. Failures are logged and otherwise ignored, as the
+     * entry can always be produced again.
+     *
+     * @param kind    the kind of entry
+     * @param key     the content-addressed key of the entry
+     * @param content the content
+     */
+    public void write(Kind kind, String key, byte[] content) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path file = file(kind, key);
+        Path temp = file.resolveSibling(TEMP_PREFIX + key + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+                // Some network file systems cannot replace atomically; the entry another instance
+                // wrote has the same content, so keeping it is as good
+                if (!Files.exists(file)) {
+                    throw e;
+                }
+            }
+            log.debug("Wrote {} {} to the shared cache, {} bytes", kind, key, content.length);
+        } catch (IOException e) {
+            log.warn("Failed to write {} {} to the shared cache {}: {}", kind, key, root, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.debug("Failed to delete temporary file {}: {}", temp, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes expired entries, and temporary files abandoned for as long.
+     */
+    @Scheduled(fixedDelayString = "${jasper.shared-cache.cleanup-interval:PT5M}")
+    public void deleteExpired() {
+        if (!isEnabled()) {
+            return;
+        }
+        int deleted = 0;
+        for (Kind kind : Kind.values()) {
+            Path directory = root.resolve(kind.directory);
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(directory, 2)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    try {
+                        if (Files.isRegularFile(file) && isExpired(Files.getLastModifiedTime(file).toInstant())
+                                && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    } catch (NoSuchFileException e) {
+                        // Deleted by another instance in the meantime
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to clean up the shared cache {}: {}", directory, e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            log.debug("Deleted {} expired shared cache entries", deleted);
+        }
+    }
+
+    private Path file(Kind kind, String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid shared cache key: " + key);
+        }
+        return root.resolve(kind.directory).resolve(key.substring(0, 2)).resolve(key + kind.extension);
+    }
+
+    private boolean isExpired(Instant lastModified) {
+        return lastModified.isBefore(Instant.now().minus(properties.getTtl()));
+    }
+}
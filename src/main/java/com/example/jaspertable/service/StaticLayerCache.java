@@ -0,0 +1,339 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JREllipse;
+import net.sf.jasperreports.engine.JRElement;
+import net.sf.jasperreports.engine.JRFrame;
+import net.sf.jasperreports.engine.JRLine;
+import net.sf.jasperreports.engine.JRRectangle;
+import net.sf.jasperreports.engine.JRStaticText;
+import net.sf.jasperreports.engine.JRStyle;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.JRMeasuredText;
+import net.sf.jasperreports.engine.util.JRElementsVisitor;
+import net.sf.jasperreports.engine.util.JRVisitorSupport;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches what the data-independent elements of the templates produce, so that the boilerplate of
+ * form-style templates is laid out and drawn once instead of in every fill and export.
+ * <p>
+ * An element is static if it is a static text, line, rectangle, ellipse or frame without property
+ * expressions, conditional styles or PDF exporter properties: its output then only depends on the
+ * template and on where the fill placed it. Every template loaded by the {@link TemplateRegistry}
+ * registers its static elements by UUID, which JasperReports copies to the printed elements,
+ * together with the fingerprint of the template; a UUID found in two different templates is not
+ * treated as static.
+ * <p>
+ * Two things are cached:
+ * <ul>
+ *     <li>the layout of static texts, i.e. their line breaks and height, which the fill would
+ *     otherwise measure again for every document, see {@link StaticTextMeasurerFactory};</li>
+ *     <li>the static layer of a page of the templates in {@code jasper.static-layers.reports}, i.e.
+ *     its static elements rendered to a PDF page of their own that {@link StaticLayerPdfExporter}
+ *     imports as a form under the remaining elements. A layer is keyed by the template, position
+ *     and size of every element in it, so pages laid out alike share it within and across
+ *     documents.</li>
+ * </ul>
+ * Lookups are counted in {@code report.static.requests}, tagged with {@code cache} ({@code text} or
+ * {@code layer}) and {@code result} ({@code hit} or {@code miss}).
+ */
+@Component
+@Slf4j
+public class StaticLayerCache {
+
+    private final ReportProperties.StaticLayers properties;
+    private final Set<String> layeredTemplates = new HashSet<>();
+    private final ConcurrentMap<UUID, Owner> owners = new ConcurrentHashMap<>();
+    private final Cache<TextKey, JRMeasuredText> texts;
+    private final Cache<String, byte[]> layers;
+    private final Counter textHits;
+    private final Counter textMisses;
+    private final Counter layerHits;
+    private final Counter layerMisses;
+
+    public StaticLayerCache(ReportProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getStaticLayers();
+        this.properties.getReports().forEach(report -> layeredTemplates.add(TemplateRegistry.normalize(report)));
+        this.texts = Caffeine.newBuilder()
+                .maximumSize(this.properties.getMaxTexts())
+                .build();
+        this.layers = Caffeine.newBuilder()
+                .maximumWeight(this.properties.getMaxSize().toBytes())
+                .<String, byte[]>weigher((key, layer) -> layer.length)
+                .build();
+        this.textHits = requestCounter(meterRegistry, "text", "hit");
+        this.textMisses = requestCounter(meterRegistry, "text", "miss");
+        this.layerHits = requestCounter(meterRegistry, "layer", "hit");
+        this.layerMisses = requestCounter(meterRegistry, "layer", "miss");
+        if (this.properties.isEnabled()) {
+            StaticTextMeasurerFactory.install(this);
+        }
+    }
+
+    /**
+     * Returns whether static layouts and layers are cached.
+     *
+     * @return {@code true} if enabled
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Returns whether the pages of some templates are exported over static layers.
+     *
+     * @return {@code true} if enabled and templates are configured in {@code jasper.static-layers.reports}
+     */
+    public boolean hasLayers() {
+        return isEnabled() && !layeredTemplates.isEmpty();
+    }
+
+    /**
+     * Registers the static elements of a loaded template. Elements of a previous version of the
+     * same template are taken over by the new version.
+     *
+     * @param template the loaded template
+     */
+    public void register(CompiledTemplate template) {
+        if (!isEnabled()) {
+            return;
+        }
+        Owner owner = new Owner(template.name(), template.fingerprint(),
+                layeredTemplates.contains(TemplateRegistry.normalize(template.name())));
+        Set<UUID> elements = staticElements(template.report());
+        for (UUID uuid : elements) {
+            owners.merge(uuid, owner, (previous, current) -> current.template().equals(previous.template()) ? current : Owner.AMBIGUOUS);
+        }
+        log.debug("Registered {} static elements of template '{}'", elements.size(), template.name());
+    }
+
+    /**
+     * Returns the fingerprint of the template a static element belongs to.
+     *
+     * @param uuid the UUID of the design element, as copied to the printed element; may be {@code null}
+     * @return the fingerprint, or {@code null} if the element is not static or its template is ambiguous
+     */
+    String fingerprint(UUID uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        Owner owner = owners.get(uuid);
+        return owner != null ? owner.fingerprint() : null;
+    }
+
+    /**
+     * Returns the fingerprint of the template a static element belongs to, if the pages of that
+     * template are exported over static layers.
+     *
+     * @param uuid the UUID of the design element, as copied to the printed element; may be {@code null}
+     * @return the fingerprint, or {@code null} if the element does not go into static layers
+     */
+    String layerFingerprint(UUID uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        Owner owner = owners.get(uuid);
+        return owner != null && owner.layered() ? owner.fingerprint() : null;
+    }
+
+    /**
+     * Returns the layout of a static text, measuring it on a cache miss.
+     *
+     * @param key      what the layout depends on
+     * @param measurer measures the text
+     * @return the layout
+     */
+    JRMeasuredText measure(TextKey key, Supplier<JRMeasuredText> measurer) {
+        JRMeasuredText measured = texts.getIfPresent(key);
+        if (measured != null) {
+            textHits.increment();
+            return measured;
+        }
+        textMisses.increment();
+        measured = MeasuredText.of(measurer.get());
+        texts.put(key, measured);
+        return measured;
+    }
+
+    /**
+     * Returns a pre-rendered static layer, rendering it on a cache miss. Concurrent misses for the
+     * same layer may render it more than once.
+     *
+     * @param key      the key of the layer
+     * @param renderer renders the layer as a one-page PDF, or returns {@code null} if it cannot
+     * @return the PDF, or {@code null} if it could not be rendered
+     */
+    byte[] layer(String key, Supplier<byte[]> renderer) {
+        byte[] layer = layers.getIfPresent(key);
+        if (layer != null) {
+            layerHits.increment();
+            return layer;
+        }
+        layerMisses.increment();
+        layer = renderer.get();
+        if (layer != null) {
+            layers.put(key, layer);
+        }
+        return layer;
+    }
+
+    private static Set<UUID> staticElements(JasperReport report) {
+        Set<UUID> elements = new HashSet<>();
+        JRElementsVisitor.visitReport(report, new JRVisitorSupport() {
+            @Override
+            public void visitStaticText(JRStaticText staticText) {
+                add(staticText);
+            }
+
+            @Override
+            public void visitLine(JRLine line) {
+                add(line);
+            }
+
+            @Override
+            public void visitRectangle(JRRectangle rectangle) {
+                add(rectangle);
+            }
+
+            @Override
+            public void visitEllipse(JREllipse ellipse) {
+                add(ellipse);
+            }
+
+            @Override
+            public void visitFrame(JRFrame frame) {
+                add(frame);
+            }
+
+            private void add(JRElement element) {
+                if (element.getUUID() != null && isStatic(report, element)) {
+                    elements.add(element.getUUID());
+                }
+            }
+        });
+        return elements;
+    }
+
+    private static boolean isStatic(JasperReport report, JRElement element) {
+        if (element.getPropertyExpressions() != null && element.getPropertyExpressions().length > 0) {
+            return false;
+        }
+        // Styles from external style templates are only resolved during the fill
+        if (element.getStyleNameReference() != null) {
+            return false;
+        }
+        for (JRStyle style = element.getStyle() != null ? element.getStyle() : report.getDefaultStyle();
+             style != null; style = style.getStyle()) {
+            if (style.getConditionalStyles() != null && style.getConditionalStyles().length > 0) {
+                return false;
+            }
+        }
+        // Form fields, tags and the like are exported per element
+        if (element.hasProperties()) {
+            for (String name : element.getPropertiesMap().getPropertyNames()) {
+                if (name.startsWith(JRPdfExporter.PDF_EXPORTER_PROPERTIES_PREFIX)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String cache, String result) {
+        return Counter.builder("report.static.requests")
+                .description("Static text layout and static layer cache lookups")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * What the layout of a static text depends on besides its template: the text, the font and the
+     * box it is laid out in, and the arguments of the measurement. The font and box are part of
+     * the key so that a fill of a previous version of a template, still running when the template
+     * is replaced, cannot store a layout the new version would use.
+     */
+    record TextKey(UUID uuid, String fingerprint, String text, String fontName, float fontSize, boolean bold,
+                   boolean italic, int width, int height, int remainingTextStart, int availableStretchHeight,
+                   boolean indentFirstLine, boolean canOverflow) {
+    }
+
+    private record Owner(String template, String fingerprint, boolean layered) {
+
+        static final Owner AMBIGUOUS = new Owner("", null, false);
+    }
+
+    /**
+     * An immutable copy of a measurement, as the measurer may reuse its result object.
+     */
+    private record MeasuredText(float leadingOffset, float lineSpacingFactor, float textWidth, float textHeight,
+                                int textOffset, boolean leftToRight, boolean paragraphCut, String textSuffix,
+                                short[] lineBreakOffsets) implements JRMeasuredText {
+
+        static MeasuredText of(JRMeasuredText measured) {
+            short[] offsets = measured.getLineBreakOffsets();
+            return new MeasuredText(measured.getLeadingOffset(), measured.getLineSpacingFactor(), measured.getTextWidth(),
+                    measured.getTextHeight(), measured.getTextOffset(), measured.isLeftToRight(), measured.isParagraphCut(),
+                    measured.getTextSuffix(), offsets != null ? offsets.clone() : null);
+        }
+
+        @Override
+        public float getLeadingOffset() {
+            return leadingOffset;
+        }
+
+        @Override
+        public float getLineSpacingFactor() {
+            return lineSpacingFactor;
+        }
+
+        @Override
+        public float getTextWidth() {
+            return textWidth;
+        }
+
+        @Override
+        public float getTextHeight() {
+            return textHeight;
+        }
+
+        @Override
+        public int getTextOffset() {
+            return textOffset;
+        }
+
+        @Override
+        public boolean isLeftToRight() {
+            return leftToRight;
+        }
+
+        @Override
+        public boolean isParagraphCut() {
+            return paragraphCut;
+        }
+
+        @Override
+        public String getTextSuffix() {
+            return textSuffix;
+        }
+
+        @Override
+        public short[] getLineBreakOffsets() {
+            return lineBreakOffsets != null ? lineBreakOffsets.clone() : null;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.jaspertable.service;
+
+import com.lowagie.text.pdf.PdfImportedPage;
+import com.lowagie.text.pdf.PdfReader;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRLineBox;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintEllipse;
+import net.sf.jasperreports.engine.JRPrintFrame;
+import net.sf.jasperreports.engine.JRPrintLine;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintRectangle;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.JRTemplatePrintElement;
+import net.sf.jasperreports.engine.type.ModeEnum;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimplePdfExporterConfiguration;
+import net.sf.jasperreports.export.pdf.classic.ClassicPdfProducer;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PDF exporter that draws the static elements of a page (see {@link StaticLayerCache}) as one
+ * pre-rendered form instead of element by element.
+ * <p>
+ * The static layer of a page is drawn first and the other elements in their usual order on top of
+ * it. So that this does not change what is visible, a static element only goes into the layer if
+ * no element outside the layer that is drawn before it overlaps it. Elements that merely share an
+ * edge do not overlap, so where the border of one runs along the background of the other the
+ * border may end up on top, by half its width. On a cache miss the layer is rendered by a second
+ * instance of this exporter that exports the same page but draws nothing else; it is imported into
+ * the document once, however many pages use it. Tagged PDFs and PDF producers other than the
+ * default are exported as usual.
+ */
+@Slf4j
+class StaticLayerPdfExporter extends JRPdfExporter {
+
+    /** Pages with fewer static elements are exported as usual, the import would cost more than it saves. */
+    private static final int MIN_LAYER_ELEMENTS = 4;
+
+    private final StaticLayerCache staticLayerCache;
+    private final boolean layerOnly;
+    private final Map<String, PdfImportedPage> importedLayers = new HashMap<>();
+    private Set<JRPrintElement> layered;
+
+    StaticLayerPdfExporter(StaticLayerCache staticLayerCache) {
+        this(staticLayerCache, Collections.emptySet(), false);
+    }
+
+    /**
+     * @param layered   the elements of the static layer
+     * @param layerOnly {@code true} to draw only the elements of the layer, {@code false} to draw
+     *                  only the other elements
+     */
+    private StaticLayerPdfExporter(StaticLayerCache staticLayerCache, Set<JRPrintElement> layered, boolean layerOnly) {
+        this.staticLayerCache = staticLayerCache;
+        this.layered = layered;
+        this.layerOnly = layerOnly;
+    }
+
+    @Override
+    protected void exportPage(JRPrintPage page) throws JRException, IOException {
+        if (!layerOnly) {
+            layered = Collections.emptySet();
+            if (pdfProducer instanceof ClassicPdfProducer producer && !Boolean.TRUE.equals(getCurrentConfiguration().isTagged())) {
+                Layer layer = plan(page);
+                if (layer != null && drawLayer(producer, page, layer)) {
+                    layered = layer.elements();
+                }
+            }
+        }
+        super.exportPage(page);
+    }
+
+    @Override
+    protected void exportElements(Collection<JRPrintElement> elements) throws IOException, JRException {
+        if (layered.isEmpty()) {
+            super.exportElements(elements);
+            return;
+        }
+        List<JRPrintElement> drawn = new ArrayList<>(elements.size());
+        for (JRPrintElement element : elements) {
+            // Frames are passed on either way, they may hold elements of this pass
+            if (element instanceof JRPrintFrame || layered.contains(element) == layerOnly) {
+                drawn.add(element);
+            }
+        }
+        super.exportElements(drawn);
+    }
+
+    @Override
+    public void exportFrame(JRPrintFrame frame) throws IOException, JRException {
+        if (layered.contains(frame) == layerOnly) {
+            super.exportFrame(frame);
+            return;
+        }
+        // The frame itself is drawn in the other pass, only its elements may belong to this one
+        setFrameElementsOffset(frame, false);
+        try {
+            exportElements(frame.getElements());
+        } finally {
+            restoreElementOffsets();
+        }
+    }
+
+    private boolean drawLayer(ClassicPdfProducer producer, JRPrintPage page, Layer layer) {
+        PdfImportedPage imported = importedLayers.get(layer.key());
+        if (imported == null) {
+            byte[] pdf = staticLayerCache.layer(layer.key(), () -> render(page, layer.elements()));
+            if (pdf == null) {
+                return false;
+            }
+            try {
+                imported = producer.getPdfWriter().getImportedPage(new PdfReader(pdf), 1);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to import static layer {}: {}", layer.key(), e.getMessage());
+                return false;
+            }
+            importedLayers.put(layer.key(), imported);
+        }
+        producer.getPdfContentByte().addTemplate(imported, 0, 0);
+        return true;
+    }
+
+    /**
+     * Renders the static layer of a page as a PDF page of the same size.
+     */
+    private byte[] render(JRPrintPage page, Set<JRPrintElement> elements) {
+        JasperPrint layerPrint = new JasperPrint();
+        layerPrint.setName(jasperPrint.getName());
+        layerPrint.setPageWidth(pageFormat.getPageWidth());
+        layerPrint.setPageHeight(pageFormat.getPageHeight());
+        layerPrint.setTopMargin(pageFormat.getTopMargin());
+        layerPrint.setLeftMargin(pageFormat.getLeftMargin());
+        layerPrint.setBottomMargin(pageFormat.getBottomMargin());
+        layerPrint.setRightMargin(pageFormat.getRightMargin());
+        layerPrint.setOrientation(pageFormat.getOrientation());
+        layerPrint.setLocaleCode(jasperPrint.getLocaleCode());
+        layerPrint.setTimeZoneId(jasperPrint.getTimeZoneId());
+        for (String name : jasperPrint.getPropertyNames()) {
+            layerPrint.setProperty(name, jasperPrint.getProperty(name));
+        }
+        layerPrint.addPage(page);
+
+        SimplePdfExporterConfiguration configuration = new SimplePdfExporterConfiguration();
+        configuration.setCompressed(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StaticLayerPdfExporter exporter = new StaticLayerPdfExporter(staticLayerCache, elements, true);
+        exporter.setExporterInput(new SimpleExporterInput(layerPrint));
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+        exporter.setConfiguration(configuration);
+        try {
+            exporter.exportReport();
+        } catch (JRException | RuntimeException e) {
+            log.warn("Failed to render static layer of '{}': {}", jasperPrint.getName(), e.getMessage());
+            return null;
+        }
+        log.debug("Rendered static layer of '{}' with {} elements, {} bytes", jasperPrint.getName(), elements.size(), out.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * Chooses the static elements of a page that can be drawn first, and computes the key of the
+     * layer they make up.
+     *
+     * @return the layer, or {@code null} if the page has too few static elements
+     */
+    private Layer plan(JRPrintPage page) {
+        Planner planner = new Planner();
+        planner.visit(page.getElements(), 0, 0);
+        if (!planner.valid || planner.elements.size() < MIN_LAYER_ELEMENTS) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES * 6);
+        buffer.putInt(pageFormat.getPageWidth()).putInt(pageFormat.getPageHeight());
+        digest.update(buffer.flip());
+        if (jasperPrint.getLocaleCode() != null) {
+            digest.update(jasperPrint.getLocaleCode().getBytes(StandardCharsets.UTF_8));
+        }
+        for (Placed placed : planner.placed) {
+            if (!planner.elements.contains(placed.element())) {
+                continue;
+            }
+            JRPrintElement element = placed.element();
+            String text = element instanceof JRPrintText printText ? printText.getFullText() : null;
+            buffer.clear();
+            buffer.putLong(element.getUUID().getMostSignificantBits())
+                    .putLong(element.getUUID().getLeastSignificantBits())
+                    .putInt(placed.x())
+                    .putInt(placed.y())
+                    .putInt(element.getWidth())
+                    .putInt(element.getHeight())
+                    // Styles are resolved during the fill; the hash tells apart versions of a template
+                    .putInt(((JRTemplatePrintElement) element).getTemplate().getHashCode())
+                    .putInt(text != null ? text.length() : -1);
+            digest.update(buffer.flip());
+            digest.update(placed.fingerprint().getBytes(StandardCharsets.US_ASCII));
+            if (text != null) {
+                digest.update(text.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return new Layer(HexFormat.of().formatHex(digest.digest()), planner.elements);
+    }
+
+    /**
+     * Returns the fingerprint of the template of a static element that may go into the layer.
+     *
+     * @return the fingerprint, or {@code null} if the element does not go into static layers
+     */
+    private String fingerprint(JRPrintElement element) {
+        if (!(element instanceof JRTemplatePrintElement)) {
+            return null;
+        }
+        if (!(element instanceof JRPrintText || element instanceof JRPrintLine || element instanceof JRPrintRectangle
+                || element instanceof JRPrintEllipse || element instanceof JRPrintFrame)) {
+            return null;
+        }
+        return staticLayerCache.layerFingerprint(element.getUUID());
+    }
+
+    private static boolean hasBorder(JRPrintFrame frame) {
+        JRLineBox box = frame.getLineBox();
+        return box.getTopPen().getLineWidth() > 0 || box.getLeftPen().getLineWidth() > 0
+                || box.getBottomPen().getLineWidth() > 0 || box.getRightPen().getLineWidth() > 0;
+    }
+
+    private record Layer(String key, Set<JRPrintElement> elements) {
+    }
+
+    private record Placed(JRPrintElement element, String fingerprint, int x, int y) {
+    }
+
+    /**
+     * Goes through the elements of a page in the order they are drawn. Drawing a static element
+     * before the others changes the page where it overlaps an element outside the layer that was
+     * drawn before it, so such elements are left out of the layer. A frame draws its background
+     * before its elements and its border after them.
+     */
+    private final class Planner {
+
+        private final List<Placed> placed = new ArrayList<>();
+        private final Set<JRPrintElement> elements = Collections.newSetFromMap(new IdentityHashMap<>());
+        /** The bounds of what was drawn so far outside the layer. */
+        private final List<Rectangle> drawnBefore = new ArrayList<>();
+        private boolean valid = true;
+
+        void visit(List<JRPrintElement> page, int offsetX, int offsetY) {
+            for (JRPrintElement element : page) {
+                int x = offsetX + element.getX();
+                int y = offsetY + element.getY();
+                Rectangle bounds = new Rectangle(x, y, element.getWidth(), element.getHeight());
+
+                String fingerprint = fingerprint(element);
+                boolean layered = fingerprint != null && !isCovered(bounds);
+                if (layered) {
+                    placed.add(new Placed(element, fingerprint, x, y));
+                    elements.add(element);
+                } else if (element.getModeValue() == ModeEnum.OPAQUE || !(element instanceof JRPrintFrame)) {
+                    drawnBefore.add(bounds);
+                }
+                if (element instanceof JRPrintFrame frame) {
+                    int drawn = drawnBefore.size();
+                    JRLineBox box = frame.getLineBox();
+                    visit(frame.getElements(), x + box.getLeftPadding(), y + box.getTopPadding());
+                    if (layered && hasBorder(frame) && drawnBefore.size() > drawn) {
+                        // Elements drawn outside the layer would cover the border of the frame
+                        if (frame.getModeValue() == ModeEnum.OPAQUE) {
+                            // and its background would cover the elements drawn in the layer
+                            valid = false;
+                        }
+                        elements.remove(frame);
+                        layered = false;
+                    }
+                    if (!layered && hasBorder(frame)) {
+                        drawnBefore.add(bounds);
+                    }
+                }
+            }
+        }
+
+        private boolean isCovered(Rectangle bounds) {
+            for (Rectangle area : drawnBefore) {
+                if (area.intersects(bounds)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
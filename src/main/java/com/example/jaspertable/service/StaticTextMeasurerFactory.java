@@ -0,0 +1,85 @@
+package com.example.jaspertable.service;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRCommonText;
+import net.sf.jasperreports.engine.JRStaticText;
+import net.sf.jasperreports.engine.JasperReportsContext;
+import net.sf.jasperreports.engine.fill.JRMeasuredText;
+import net.sf.jasperreports.engine.fill.JRTextMeasurer;
+import net.sf.jasperreports.engine.fill.TextMeasurerFactory;
+import net.sf.jasperreports.engine.util.JRStyledText;
+import net.sf.jasperreports.engine.util.JRTextMeasurerFactory;
+import net.sf.jasperreports.engine.util.JRTextMeasurerUtil;
+
+/**
+ * Text measurer factory that reuses the layout of static texts from the {@link StaticLayerCache}
+ * across fills, and measures every other text with the default {@link TextMeasurerFactory}.
+ * <p>
+ * JasperReports instantiates the factory by its class name, taken from the
+ * {@value JRTextMeasurerUtil#PROPERTY_TEXT_MEASURER_FACTORY} property that
+ * {@link #install(StaticLayerCache)} sets, so the cache is handed over in a static field.
+ */
+public class StaticTextMeasurerFactory implements JRTextMeasurerFactory {
+
+    private static volatile StaticLayerCache staticLayerCache;
+
+    private final TextMeasurerFactory defaultFactory = new TextMeasurerFactory();
+
+    /**
+     * Makes the fills of this process measure static texts through the given cache.
+     *
+     * @param cache the cache of static text layouts
+     */
+    static void install(StaticLayerCache cache) {
+        staticLayerCache = cache;
+        DefaultJasperReportsContext.getInstance().setProperty(JRTextMeasurerUtil.PROPERTY_TEXT_MEASURER_FACTORY,
+                StaticTextMeasurerFactory.class.getName());
+    }
+
+    @Override
+    public JRTextMeasurer createMeasurer(JasperReportsContext jasperReportsContext, JRCommonText element) {
+        StaticLayerCache cache = staticLayerCache;
+        if (cache != null && cache.isEnabled() && element instanceof JRStaticText staticText) {
+            String fingerprint = cache.fingerprint(staticText.getUUID());
+            if (fingerprint != null) {
+                return new CachingTextMeasurer(cache, fingerprint, staticText, jasperReportsContext);
+            }
+        }
+        return defaultFactory.createMeasurer(jasperReportsContext, element);
+    }
+
+    /**
+     * Measures a static text through the cache, creating the default measurer only on a miss.
+     */
+    private final class CachingTextMeasurer implements JRTextMeasurer {
+
+        private final StaticLayerCache cache;
+        private final String fingerprint;
+        private final JRStaticText element;
+        private final JasperReportsContext jasperReportsContext;
+        private JRTextMeasurer measurer;
+
+        CachingTextMeasurer(StaticLayerCache cache, String fingerprint, JRStaticText element,
+                            JasperReportsContext jasperReportsContext) {
+            this.cache = cache;
+            this.fingerprint = fingerprint;
+            this.element = element;
+            this.jasperReportsContext = jasperReportsContext;
+        }
+
+        @Override
+        public JRMeasuredText measure(JRStyledText styledText, int remainingTextStart, int availableStretchHeight,
+                                      boolean indentFirstLine, boolean canOverflow) {
+            StaticLayerCache.TextKey key = new StaticLayerCache.TextKey(element.getUUID(), fingerprint,
+                    styledText.getText(), element.getFontName(), element.getFontsize(), element.isBold(), element.isItalic(),
+                    element.getWidth(), element.getHeight(), remainingTextStart, availableStretchHeight,
+                    indentFirstLine, canOverflow);
+            return cache.measure(key, () -> {
+                if (measurer == null) {
+                    measurer = defaultFactory.createMeasurer(jasperReportsContext, element);
+                }
+                return measurer.measure(styledText, remainingTextStart, availableStretchHeight, indentFirstLine, canOverflow);
+            });
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many fills of each template run at the same time, so that a burst of expensive
+ * templates cannot take every CPU away from cheap ones.
+ * <p>
+ * Every template has its own fair semaphore. The time spent waiting for a permit is recorded in
+ * the {@code report.bulkhead.wait} timer, tagged by template and outcome, to help size the limits.
+ * Semaphores are only created for templates that exist, so names taken from requests cannot grow
+ * the semaphores and their gauges without bound.
+ */
+@Component
+@Slf4j
+public class TemplateBulkhead {
+
+    private final ReportProperties.Bulkhead properties;
+    private final MeterRegistry meterRegistry;
+    private final TemplateRegistry templateRegistry;
+    private final ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    public TemplateBulkhead(ReportProperties properties, MeterRegistry meterRegistry, TemplateRegistry templateRegistry) {
+        this.properties = properties.getBulkhead();
+        this.meterRegistry = meterRegistry;
+        this.templateRegistry = templateRegistry;
+    }
+
+    /**
+     * Acquires one permit for each of the given templates. Permits are taken in name order so that
+     * concurrent requests for overlapping template sets cannot deadlock.
+     *
+     * @param templateNames the templates about to be filled
+     * @return the acquired permits, to be closed when the fill and export are done
+     * @throws IllegalArgumentException if a template does not exist
+     * @throws TooManyRequestsException if a permit is not available within the configured wait time
+     */
+    public Permits acquire(Collection<String> templateNames) {
+        Permits permits = open();
+        TreeSet<String> ordered = new TreeSet<>();
+        templateNames.forEach(name -> ordered.add(TemplateRegistry.normalize(name)));
+        try {
+            ordered.forEach(permits::acquire);
+        } catch (RuntimeException e) {
+            permits.close();
+            throw e;
+        }
+        return permits;
+    }
+
+    /**
+     * Opens an empty set of permits for callers that discover templates one by one, such as streamed
+     * requests. Such callers must {@link Permits#release(String) release} the permit of a template
+     * before they acquire the next one, as permits taken in request order could otherwise deadlock
+     * with another request.
+     *
+     * @return an empty permit set
+     */
+    public Permits open() {
+        return new Permits();
+    }
+
+    private Semaphore semaphore(String templateName) {
+        Semaphore existing = semaphores.get(templateName);
+        if (existing != null) {
+            return existing;
+        }
+        if (!templateRegistry.exists(templateName)) {
+            throw new IllegalArgumentException("Unknown template: " + templateName);
+        }
+        return semaphores.computeIfAbsent(templateName, name -> {
+            int limit = Math.max(1, properties.getLimits().getOrDefault(name, properties.getDefaultLimit()));
+            Semaphore semaphore = new Semaphore(limit, true);
+            Gauge.builder("report.bulkhead.waiting", semaphore, Semaphore::getQueueLength)
+                    .description("Requests waiting for a template bulkhead permit")
+                    .tag("template", name)
+                    .register(meterRegistry);
+            Gauge.builder("report.bulkhead.available", semaphore, Semaphore::availablePermits)
+                    .description("Free template bulkhead permits")
+                    .tag("template", name)
+                    .register(meterRegistry);
+            log.debug("Created bulkhead for template '{}' with limit {}", name, limit);
+            return semaphore;
+        });
+    }
+
+    private void recordWait(String templateName, String outcome, long waitedNanos) {
+        Timer.builder("report.bulkhead.wait")
+                .description("Time spent waiting for a template bulkhead permit")
+                .tag("template", templateName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Permits held by one request. Closing releases all of them.
+     */
+    public class Permits implements AutoCloseable {
+
+        private final List<Semaphore> held = new ArrayList<>();
+
+        /**
+         * Acquires a permit for one more template; does nothing if the bulkhead is disabled or a
+         * permit for that template is already held.
+         *
+         * @param templateName the template about to be filled
+         * @throws IllegalArgumentException if the template does not exist
+         * @throws TooManyRequestsException if a permit is not available within the configured wait time
+         */
+        public void acquire(String templateName) {
+            if (!properties.isEnabled()) {
+                return;
+            }
+            String name = TemplateRegistry.normalize(templateName);
+            Semaphore semaphore = semaphore(name);
+            if (held.contains(semaphore)) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = semaphore.tryAcquire(properties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            long waited = System.nanoTime() - start;
+            recordWait(name, acquired ? "acquired" : "rejected", waited);
+
+            if (!acquired) {
+                log.warn("Bulkhead for template '{}' is saturated, rejected after {} ms", name, waited / 1_000_000);
+                throw new TooManyRequestsException("Too many concurrent '" + name + "' reports, retry later",
+                        Math.max(1, properties.getMaxWait().toSeconds()));
+            }
+            log.trace("Acquired bulkhead permit for template '{}' after {} ms", name, waited / 1_000_000);
+            held.add(semaphore);
+        }
+
+        /**
+         * Acquires a permit for one more template if one is free right away, like
+         * {@link #acquire(String)} without waiting.
+         *
+         * @param templateName the template about to be filled
+         * @return {@code true} if the permit is held now, {@code false} if it would have to be waited for
+         * @throws IllegalArgumentException if the template does not exist
+         */
+        public boolean tryAcquire(String templateName) {
+            if (!properties.isEnabled()) {
+                return true;
+            }
+            String name = TemplateRegistry.normalize(templateName);
+            Semaphore semaphore = semaphore(name);
+            if (held.contains(semaphore)) {
+                return true;
+            }
+            if (!semaphore.tryAcquire()) {
+                return false;
+            }
+            recordWait(name, "acquired", 0);
+            held.add(semaphore);
+            return true;
+        }
+
+        /**
+         * Releases the permit held for one template, e.g. once all of its rows were filled; does
+         * nothing if no permit for that template is held.
+         *
+         * @param templateName the template
+         */
+        public void release(String templateName) {
+            Semaphore semaphore = semaphores.get(TemplateRegistry.normalize(templateName));
+            if (semaphore != null && held.remove(semaphore)) {
+                semaphore.release();
+            }
+        }
+
+        @Override
+        public void close() {
+            held.forEach(Semaphore::release);
+            held.clear();
+        }
+    }
+}
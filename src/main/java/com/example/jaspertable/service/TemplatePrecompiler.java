@@ -0,0 +1,63 @@
+package com.example.jaspertable.service;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time tool that compiles every {@code .jrxml} under a source directory into a {@code .jasper}
+ * file at the same relative path under a target directory.
+ * <p>
+ * Invoked by the {@code exec-maven-plugin} in the {@code process-classes} phase so the packaged
+ * application ships with compiled templates and {@link TemplateRegistry} never has to run JDT
+ * on the request path. Templates whose {@code .jasper} is newer than the source are skipped.
+ */
+public final class TemplatePrecompiler {
+
+    private TemplatePrecompiler() {
+    }
+
+    public static void main(String[] args) throws IOException, JRException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: TemplatePrecompiler <sourceDir> <targetDir>");
+        }
+        Path sourceDir = Paths.get(args[0]);
+        Path targetDir = Paths.get(args[1]);
+
+        List<Path> templates;
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            templates = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(".jrxml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        int compiled = 0;
+        for (Path template : templates) {
+            Path relative = sourceDir.relativize(template);
+            String jasperName = relative.getFileName().toString().replaceFirst("\\.jrxml$", ".jasper");
+            Path target = targetDir.resolve(relative).resolveSibling(jasperName);
+
+            if (Files.exists(target)
+                    && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(template)) >= 0) {
+                continue;
+            }
+
+            Files.createDirectories(target.getParent());
+            long start = System.nanoTime();
+            JasperCompileManager.compileReportToFile(template.toString(), target.toString());
+            compiled++;
+            System.out.printf("Compiled %s -> %s (%d ms)%n", relative, targetDir.relativize(target),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        System.out.printf("Precompiled %d of %d report templates%n", compiled, templates.size());
+    }
+}
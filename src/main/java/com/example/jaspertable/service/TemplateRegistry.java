@@ -0,0 +1,383 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide registry of compiled report templates.
+ * <p>
+ * Templates from the external template directory take precedence over the packaged ones. Packaged
+ * templates are looked up as precompiled {@code .jasper} files produced by the build
+ * ({@link TemplatePrecompiler}) and only compiled from {@code .jrxml} on a cache miss.
+ * Each template is loaded at most once per process, until it is replaced or evicted by the
+ * {@link ExternalTemplateWatcher}; concurrent misses for the same template wait for one load. An
+ * external template that the watcher has not compiled yet is served in its precompiled packaged
+ * version, if there is one, while the watcher compiles it in the background. When the {@link SharedCache} is enabled, compiled templates are
+ * kept there by the fingerprint of their source and the JasperReports version, so that a template
+ * is compiled by one instance and loaded by the others. The static elements of every loaded
+ * template are registered with the {@link StaticLayerCache}.
+ */
+@Component
+@Slf4j
+public class TemplateRegistry {
+
+    static final String TEMPLATE_LOCATION = "reports/report/";
+
+    /** Compiled templates are only shared between instances running the same JasperReports version. */
+    private static final String COMPILER_VERSION = String.valueOf(JasperReport.class.getPackage().getSpecificationVersion());
+
+    private final ConcurrentMap<String, CompiledTemplate> compiledReports = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<CompiledTemplate>> loads = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Path externalDir;
+    private final ReportMetrics reportMetrics;
+    private final SharedCache sharedCache;
+    private final StaticLayerCache staticLayerCache;
+    private volatile Consumer<String> externalCompiler;
+
+    public TemplateRegistry(ReportProperties properties, ReportMetrics reportMetrics, SharedCache sharedCache,
+                            StaticLayerCache staticLayerCache) {
+        String dir = properties.getTemplates().getExternalDir();
+        this.externalDir = StringUtils.hasText(dir) ? Paths.get(dir) : null;
+        this.reportMetrics = reportMetrics;
+        this.sharedCache = sharedCache;
+        this.staticLayerCache = staticLayerCache;
+    }
+
+    /**
+     * Returns the compiled template with the given name, loading it on first use.
+     *
+     * @param templateName the template name without extension, e.g. {@code tz}
+     * @return the compiled template
+     * @throws JRException if the template does not exist or cannot be compiled
+     */
+    public JasperReport get(String templateName) throws JRException {
+        return resolve(templateName).report();
+    }
+
+    /**
+     * Returns the current registry entry for the given template, loading it on first use.
+     *
+     * @param templateName the template name without extension, e.g. {@code tz}
+     * @return the current compiled template
+     * @throws JRException if the template does not exist or cannot be compiled
+     */
+    public CompiledTemplate resolve(String templateName) throws JRException {
+        String name = normalize(templateName);
+        CompiledTemplate template = compiledReports.get(name);
+        if (template != null) {
+            log.trace("Compiled template cache hit: '{}'", name);
+            return template;
+        }
+        CompletableFuture<CompiledTemplate> load = new CompletableFuture<>();
+        CompletableFuture<CompiledTemplate> running = loads.putIfAbsent(name, load);
+        if (running != null) {
+            log.debug("Waiting for the running load of template '{}'", name);
+            return await(running);
+        }
+        try {
+            template = compiledReports.get(name);
+            if (template == null) {
+                long start = System.nanoTime();
+                try {
+                    template = load(name);
+                } catch (JRException | RuntimeException e) {
+                    // The name of a template that does not exist comes from the request, keep it out of the tags
+                    reportMetrics.recordPhase("load", ReportMetrics.UNKNOWN, false, start);
+                    throw e;
+                }
+                reportMetrics.recordPhase("load", name, true, start);
+                // A version the watcher swapped in meanwhile is newer than the loaded one
+                CompiledTemplate current = compiledReports.putIfAbsent(name, template);
+                if (current != null) {
+                    template = current;
+                }
+            }
+            load.complete(template);
+            return template;
+        } catch (JRException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(name, load);
+        }
+    }
+
+    /**
+     * Sets the callback that compiles an external template in the background, used when a request
+     * needs an external template before the {@link ExternalTemplateWatcher} compiled it.
+     *
+     * @param compiler called with the template name; expected to {@link #replace} the template once compiled
+     */
+    public void setExternalCompiler(Consumer<String> compiler) {
+        this.externalCompiler = compiler;
+    }
+
+    /**
+     * Atomically replaces the compiled template with the given name. Fills that already
+     * resolved the previous version keep using it.
+     *
+     * @param templateName the template name
+     * @param report       the newly compiled report
+     * @param source       where the report was loaded from
+     * @param templateFile the content of the template file the report was compiled from
+     * @return the new registry entry
+     */
+    public CompiledTemplate replace(String templateName, JasperReport report, CompiledTemplate.Source source, byte[] templateFile) {
+        String name = normalize(templateName);
+        CompiledTemplate template = newTemplate(name, report, source, templateFile);
+        compiledReports.put(name, template);
+        log.info("Replaced compiled template '{}' with version {} from {}", name, template.version(), source);
+        return template;
+    }
+
+    /**
+     * Drops the compiled template with the given name so that the next lookup loads it again.
+     *
+     * @param templateName the template name
+     */
+    public void evict(String templateName) {
+        String name = normalize(templateName);
+        if (compiledReports.remove(name) != null) {
+            log.info("Evicted compiled template '{}'", name);
+        }
+    }
+
+    /**
+     * Returns the {@code .jrxml} file for the given template in the external template directory.
+     *
+     * @param templateName the template name
+     * @return the file, or empty if no external directory is configured or the file does not exist
+     */
+    public Optional<Path> externalTemplate(String templateName) {
+        if (externalDir == null) {
+            return Optional.empty();
+        }
+        Path file = externalDir.resolve(normalize(templateName) + ".jrxml");
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Returns whether a template can be resolved, without loading or compiling it.
+     *
+     * @param templateName the template name
+     * @return {@code true} if the template is loaded, in the external template directory or packaged
+     */
+    public boolean exists(String templateName) {
+        String name = normalize(templateName);
+        if (compiledReports.containsKey(name) || externalTemplate(name).isPresent()) {
+            return true;
+        }
+        ClassLoader classLoader = getClass().getClassLoader();
+        return classLoader.getResource(TEMPLATE_LOCATION + name + ".jasper") != null
+                || classLoader.getResource(TEMPLATE_LOCATION + name + ".jrxml") != null;
+    }
+
+    /**
+     * Lists the names of all templates that can be resolved: packaged ones and those in the
+     * external template directory.
+     *
+     * @return the normalized template names, sorted
+     */
+    public SortedSet<String> templateNames() {
+        SortedSet<String> names = new TreeSet<>();
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(getClass().getClassLoader());
+            for (String extension : new String[]{".jasper", ".jrxml"}) {
+                for (Resource resource : resolver.getResources("classpath*:" + TEMPLATE_LOCATION + "*" + extension)) {
+                    String filename = resource.getFilename();
+                    if (filename != null) {
+                        names.add(normalize(filename.substring(0, filename.length() - extension.length())));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list packaged templates: {}", e.getMessage());
+        }
+        if (externalDir != null && Files.isDirectory(externalDir)) {
+            try (Stream<Path> files = Files.list(externalDir)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(filename -> filename.endsWith(".jrxml"))
+                        .forEach(filename -> names.add(normalize(filename.substring(0, filename.length() - ".jrxml".length()))));
+            } catch (IOException e) {
+                log.warn("Failed to list external templates in '{}': {}", externalDir, e.getMessage());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Computes the fingerprint of a template file, see {@link CompiledTemplate#fingerprint()}.
+     *
+     * @param templateFile the content of the {@code .jrxml} or {@code .jasper} file
+     * @return the hex SHA-256 of the content
+     */
+    public static String fingerprint(byte[] templateFile) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(templateFile));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Normalizes a template key from the request the same way for lookups and loading.
+     *
+     * @param templateName the raw template name
+     * @return the trimmed, lower-cased name
+     */
+    public static String normalize(String templateName) {
+        return templateName.trim().toLowerCase();
+    }
+
+    private static CompiledTemplate await(CompletableFuture<CompiledTemplate> load) throws JRException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof JRException failure) {
+                throw failure;
+            }
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw e;
+        }
+    }
+
+    private CompiledTemplate load(String name) throws JRException {
+        Optional<Path> external = externalTemplate(name);
+        if (external.isPresent()) {
+            Consumer<String> compiler = externalCompiler;
+            CompiledTemplate packaged = compiler != null ? loadPrecompiled(name) : null;
+            if (packaged != null) {
+                log.info("External template '{}' is not compiled yet, serving the packaged version meanwhile", name);
+                compiler.accept(name);
+                return packaged;
+            }
+            log.info("Compiled template missing for external '{}', compiling {}", name, external.get());
+            try {
+                byte[] jrxml = Files.readAllBytes(external.get());
+                return newTemplate(name, compile(name, jrxml), CompiledTemplate.Source.EXTERNAL, jrxml);
+            } catch (IOException e) {
+                throw new JRException("Failed to read report template: " + external.get(), e);
+            }
+        }
+
+        CompiledTemplate precompiled = loadPrecompiled(name);
+        if (precompiled != null) {
+            return precompiled;
+        }
+
+        String jrxmlPath = TEMPLATE_LOCATION + name + ".jrxml";
+        try (InputStream jrxmlStream = getClass().getClassLoader().getResourceAsStream(jrxmlPath)) {
+            if (jrxmlStream == null) {
+                log.error("Report template not found: {}. Throwing JRException.", jrxmlPath);
+                throw new JRException("❌ Report template not found: " + jrxmlPath);
+            }
+            log.info("Precompiled template missing for '{}', compiling {}", name, jrxmlPath);
+            byte[] jrxml = jrxmlStream.readAllBytes();
+            return newTemplate(name, compile(name, jrxml), CompiledTemplate.Source.CLASSPATH, jrxml);
+        } catch (IOException e) {
+            throw new JRException("Failed to read report template: " + jrxmlPath, e);
+        }
+    }
+
+    /**
+     * Loads the packaged {@code .jasper} of a template.
+     *
+     * @return the template, or {@code null} if there is none or it cannot be loaded
+     */
+    private CompiledTemplate loadPrecompiled(String name) {
+        String jasperPath = TEMPLATE_LOCATION + name + ".jasper";
+        try (InputStream jasperStream = getClass().getClassLoader().getResourceAsStream(jasperPath)) {
+            if (jasperStream != null) {
+                log.debug("Loading precompiled template: '{}'", jasperPath);
+                byte[] jasper = jasperStream.readAllBytes();
+                JasperReport report = (JasperReport) JRLoader.loadObject(new ByteArrayInputStream(jasper));
+                return newTemplate(name, report, CompiledTemplate.Source.PRECOMPILED, jasper);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read precompiled template '{}', falling back to compilation: {}", jasperPath, e.getMessage());
+        } catch (JRException e) {
+            log.warn("Precompiled template '{}' could not be loaded, falling back to compilation: {}", jasperPath, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Compiles a template, or loads it from the shared cache if another instance already compiled
+     * the same source. A newly compiled template is written to the shared cache.
+     *
+     * @param name  the template name
+     * @param jrxml the content of the {@code .jrxml} file
+     * @return the compiled report
+     * @throws JRException if the template cannot be compiled
+     */
+    JasperReport compile(String name, byte[] jrxml) throws JRException {
+        String key = fingerprint(jrxml) + "-" + COMPILER_VERSION;
+        byte[] shared = sharedCache.read(SharedCache.Kind.TEMPLATE, key);
+        if (shared != null) {
+            try {
+                JasperReport report = (JasperReport) JRLoader.loadObject(new ByteArrayInputStream(shared));
+                log.info("Loaded compiled template '{}' from the shared cache", name);
+                return report;
+            } catch (JRException | ClassCastException e) {
+                log.warn("Compiled template '{}' in the shared cache could not be loaded, compiling: {}", name, e.getMessage());
+            }
+        }
+        JasperReport report = reportMetrics.time("compile", name, () -> compile(name, new ByteArrayInputStream(jrxml)));
+        if (sharedCache.isEnabled()) {
+            try {
+                ByteArrayOutputStream jasper = new ByteArrayOutputStream();
+                JRSaver.saveObject(report, jasper);
+                sharedCache.write(SharedCache.Kind.TEMPLATE, key, jasper.toByteArray());
+            } catch (JRException e) {
+                log.warn("Failed to serialize compiled template '{}' for the shared cache: {}", name, e.getMessage());
+            }
+        }
+        return report;
+    }
+
+    static JasperReport compile(String name, InputStream jrxmlStream) throws JRException {
+        long start = System.nanoTime();
+        JasperReport report = JasperCompileManager.compileReport(jrxmlStream);
+        log.info("Compiled template '{}' in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private CompiledTemplate newTemplate(String name, JasperReport report, CompiledTemplate.Source source, byte[] templateFile) {
+        CompiledTemplate template = new CompiledTemplate(name, report, source, versions.incrementAndGet(), fingerprint(templateFile));
+        staticLayerCache.register(template);
+        return template;
+    }
+}
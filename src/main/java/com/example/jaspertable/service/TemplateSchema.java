@@ -0,0 +1,26 @@
+package com.example.jaspertable.service;
+
+import java.util.List;
+
+/**
+ * The fields a template reads from each row of report data, as declared in its {@code <field>}
+ * elements. Keys of a row that are not listed here are never read by the template.
+ *
+ * @param template    the normalized template name
+ * @param version     the version of the compiled template, see {@link CompiledTemplate#version()}
+ * @param fingerprint the fingerprint of the template file, see {@link CompiledTemplate#fingerprint()}
+ * @param fields      the declared fields, in declaration order
+ */
+public record TemplateSchema(String template, long version, String fingerprint, List<Field> fields) {
+
+    /**
+     * A declared field.
+     *
+     * @param name        the key of the value in a row
+     * @param type        the class of the value the template expects
+     * @param image       whether the value is an image, sent as base64 or a data URI
+     * @param description the description from the template, may be {@code null}
+     */
+    public record Field(String name, String type, boolean image, String description) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.exception.InvalidPayloadException;
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Describes the fields of the templates and checks report data against them before any fill work
+ * is done.
+ * <p>
+ * The schema of a template is extracted from its compiled report once and kept until the report is
+ * replaced. Validation first checks that every template of a request exists, so that a misspelled
+ * template name is rejected before the others are compiled. It then removes the keys of each row
+ * that the template does not declare, which the fill would ignore anyway, so that unused values
+ * such as stray base64 images are released before the fill and do not affect the output cache key.
+ * Finally, every declared value must be an instance of the field class, as the fill would
+ * otherwise fail on it part way through the document.
+ */
+@Service
+@Slf4j
+public class TemplateSchemaService {
+
+    /** Validation stops collecting errors beyond this many. */
+    private static final int MAX_ERRORS = 50;
+
+    private final TemplateRegistry templateRegistry;
+    private final ImagePreprocessor imagePreprocessor;
+    private final Map<JasperReport, Schema> schemas = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public TemplateSchemaService(TemplateRegistry templateRegistry, ImagePreprocessor imagePreprocessor) {
+        this.templateRegistry = templateRegistry;
+        this.imagePreprocessor = imagePreprocessor;
+    }
+
+    /**
+     * Returns the schema of a template, loading the template on first use.
+     *
+     * @param templateName the template name
+     * @return the declared fields of the template
+     * @throws ResourceNotFoundException if the template does not exist
+     * @throws JRException               if the template cannot be compiled
+     */
+    public TemplateSchema schema(String templateName) throws JRException {
+        if (!templateRegistry.exists(templateName)) {
+            throw ResourceNotFoundException.create("Template", "name", templateName);
+        }
+        return schemaOf(templateRegistry.resolve(templateName)).description();
+    }
+
+    /**
+     * Validates report data against the schemas of its templates and removes the keys the templates
+     * do not declare. The rows are modified in place.
+     *
+     * @param data the report data, keyed by template name; nothing is checked if it is empty
+     * @throws InvalidPayloadException if a template does not exist, or a value does not match its field
+     * @throws JRException             if a template cannot be compiled
+     */
+    public void validate(LinkedHashMap<String, List<Map<String, Object>>> data) throws JRException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (String key : data.keySet()) {
+            if (!templateRegistry.exists(key)) {
+                errors.put(key, "unknown template");
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidPayloadException(errors);
+        }
+
+        long stripped = 0;
+        for (Map.Entry<String, List<Map<String, Object>>> entry : data.entrySet()) {
+            List<Map<String, Object>> rows = entry.getValue();
+            if (rows == null) {
+                errors.put(entry.getKey(), "expected an array of rows");
+                continue;
+            }
+            Schema schema = schemaOf(templateRegistry.resolve(entry.getKey()));
+            for (int index = 0; index < rows.size(); index++) {
+                Map<String, Object> row = rows.get(index);
+                if (row == null) {
+                    continue;
+                }
+                Iterator<Map.Entry<String, Object>> values = row.entrySet().iterator();
+                while (values.hasNext()) {
+                    Map.Entry<String, Object> value = values.next();
+                    JRField field = schema.fields().get(value.getKey());
+                    if (field == null) {
+                        values.remove();
+                        stripped++;
+                        continue;
+                    }
+                    String error = schema.check(field, value.getValue());
+                    if (error != null && errors.size() < MAX_ERRORS) {
+                        errors.put(entry.getKey() + "[" + index + "]." + value.getKey(), error);
+                    }
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidPayloadException(errors);
+        }
+        if (stripped > 0) {
+            log.debug("Removed {} values of undeclared fields from the report data", stripped);
+        }
+    }
+
+    private Schema schemaOf(CompiledTemplate template) {
+        return schemas.computeIfAbsent(template.report(),
+                report -> Schema.of(template, report, imagePreprocessor.imageFields(report)));
+    }
+
+    /**
+     * The schema of a template together with what validation needs from its compiled report.
+     */
+    private record Schema(TemplateSchema description, Map<String, JRField> fields, Set<String> imageFields) {
+
+        static Schema of(CompiledTemplate template, JasperReport report, Set<String> imageFields) {
+            List<TemplateSchema.Field> described = new ArrayList<>();
+            Map<String, JRField> fields = new HashMap<>();
+            if (report.getFields() != null) {
+                for (JRField field : report.getFields()) {
+                    described.add(new TemplateSchema.Field(field.getName(), field.getValueClassName(),
+                            imageFields.contains(field.getName()), field.getDescription()));
+                    fields.put(field.getName(), field);
+                }
+            }
+            TemplateSchema description = new TemplateSchema(template.name(), template.version(), template.fingerprint(),
+                    Collections.unmodifiableList(described));
+            return new Schema(description, fields, Set.copyOf(imageFields));
+        }
+
+        /**
+         * @return why the value cannot be filled into the field, or {@code null} if it can
+         */
+        String check(JRField field, Object value) {
+            Class<?> type = field.getValueClass();
+            if (value == null || type.isInstance(value)) {
+                return null;
+            }
+            // Images are converted to bytes or to a data URI, whichever the field expects, before the fill
+            if ((value instanceof String || value instanceof byte[]) && imageFields.contains(field.getName())
+                    && (type.isAssignableFrom(byte[].class) || type.isAssignableFrom(String.class))) {
+                return null;
+            }
+            return "expected " + field.getValueClassName() + ", got " + jsonType(value);
+        }
+
+        private static String jsonType(Object value) {
+            if (value instanceof String) {
+                return "string";
+            }
+            if (value instanceof Number) {
+                return "number";
+            }
+            if (value instanceof Boolean) {
+                return "boolean";
+            }
+            if (value instanceof byte[]) {
+                return "binary";
+            }
+            if (value instanceof List) {
+                return "array";
+            }
+            if (value instanceof Map) {
+                return "object";
+            }
+            return value.getClass().getName();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Warms the report pipeline up after startup so that the first real request does not pay for
+ * template loading, expression class loading, font extension and AWT initialization and exporter
+ * setup.
+ * <p>
+ * Every template is resolved and rendered once to PDF with a synthetic row, on a background thread
+ * so that liveness is not affected. {@link WarmupHealthIndicator} keeps the readiness probe down
+ * until the warm-up has finished. Failures are logged and reported in the health details; whether
+ * they keep the instance out of service is up to the {@link WarmupHealthIndicator}. If the master
+ * cannot be loaded, no template can render, so the others are not attempted.
+ * <p>
+ * With {@code jasper.warmup.exit} the application shuts down after the warm-up, so that a training
+ * run, e.g. with {@code -XX:ArchiveClassesAtExit}, has loaded everything a report needs by then.
+ */
+@Component
+@Slf4j
+public class TemplateWarmup {
+
+    /** The template every report is rendered through, reported as failed if it cannot be loaded. */
+    public static final String MASTER = "master";
+
+    private static final String SYNTHETIC_VALUE = "warm-up";
+
+    private final ReportProperties.Warmup properties;
+    private final TemplateRegistry templateRegistry;
+    private final JReportService jReportService;
+    private final ConfigurableApplicationContext applicationContext;
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    private volatile boolean finished;
+    private volatile long durationMillis = -1;
+    private volatile int templateCount;
+
+    public TemplateWarmup(ReportProperties properties, TemplateRegistry templateRegistry, JReportService jReportService,
+                          ConfigurableApplicationContext applicationContext) {
+        this.properties = properties.getWarmup();
+        this.templateRegistry = templateRegistry;
+        this.jReportService = jReportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("Template warm-up is disabled.");
+            finished = true;
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "template-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns whether the warm-up has finished, successfully or not.
+     *
+     * @return {@code true} once every template was attempted
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns how long the warm-up took.
+     *
+     * @return the duration in milliseconds, or {@code -1} if it has not finished
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Returns how many templates the warm-up renders, not counting the master.
+     *
+     * @return the number of templates, {@code 0} before the warm-up has started
+     */
+    public int getTemplateCount() {
+        return templateCount;
+    }
+
+    /**
+     * Returns the templates that failed to warm up, including {@value #MASTER} if it could not be
+     * loaded.
+     *
+     * @return the error message by template name
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        // The master is rendered as part of every other template
+        Set<String> templateNames = templateRegistry.templateNames();
+        templateNames.remove(MASTER);
+        templateCount = templateNames.size();
+        log.info("Warming up {} report templates.", templateNames.size());
+        try {
+            if (loadMaster()) {
+                templateNames.forEach(this::warmUp);
+            }
+        } finally {
+            durationMillis = (System.nanoTime() - start) / 1_000_000;
+            finished = true;
+            log.info("Template warm-up finished in {} ms, {} of {} templates failed.",
+                    durationMillis, failures.size(), templateNames.size());
+        }
+        if (properties.isExit()) {
+            log.info("Shutting down after the warm-up.");
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    private boolean loadMaster() {
+        try {
+            templateRegistry.get(MASTER);
+            return true;
+        } catch (Exception e) {
+            failures.put(MASTER, String.valueOf(e.getMessage()));
+            log.error("Warm-up failed, the master template cannot be loaded: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void warmUp(String templateName) {
+        long start = System.nanoTime();
+        try {
+            JasperReport report = templateRegistry.get(templateName);
+            LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+            data.put(templateName, Collections.singletonList(syntheticRow(report)));
+            byte[] pdf = jReportService.renderPdf(templateName, data);
+            log.debug("Warmed up template '{}' in {} ms ({} bytes).", templateName,
+                    (System.nanoTime() - start) / 1_000_000, pdf.length);
+        } catch (Exception e) {
+            failures.put(templateName, String.valueOf(e.getMessage()));
+            log.warn("Warm-up of template '{}' failed: {}", templateName, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> syntheticRow(JasperReport report) {
+        // Only text fields get a value; an empty image field renders blank
+        Map<String, Object> row = new HashMap<>();
+        if (report.getFields() != null) {
+            for (JRField field : report.getFields()) {
+                if (String.class.equals(field.getValueClass())) {
+                    row.put(field.getName(), SYNTHETIC_VALUE);
+                }
+            }
+        }
+        return row;
+    }
+}
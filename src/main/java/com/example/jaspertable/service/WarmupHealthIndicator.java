@@ -0,0 +1,47 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports {@code OUT_OF_SERVICE} until the {@link TemplateWarmup} has finished. Part of the
+ * readiness health group, so instances only receive traffic once they are warm.
+ * <p>
+ * An instance that cannot render anything stays out of service after the warm-up too: when the
+ * master failed to load, when every template failed, or when more templates failed than
+ * {@code jasper.warmup.max-failures} allows.
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final TemplateWarmup templateWarmup;
+    private final ReportProperties.Warmup properties;
+
+    public WarmupHealthIndicator(TemplateWarmup templateWarmup, ReportProperties properties) {
+        this.templateWarmup = templateWarmup;
+        this.properties = properties.getWarmup();
+    }
+
+    @Override
+    public Health health() {
+        if (!templateWarmup.isFinished()) {
+            return Health.outOfService().build();
+        }
+        Map<String, String> failures = templateWarmup.getFailures();
+        int templates = templateWarmup.getTemplateCount();
+        Integer maxFailures = properties.getMaxFailures();
+        boolean serviceable = !failures.containsKey(TemplateWarmup.MASTER)
+                && (templates == 0 || failures.size() < templates)
+                && (maxFailures == null || failures.size() <= maxFailures);
+        return (serviceable ? Health.up() : Health.outOfService())
+                .withDetail("durationMillis", templateWarmup.getDurationMillis())
+                .withDetail("templates", templates)
+                .withDetail("failedCount", failures.size())
+                .withDetail("failedTemplates", failures)
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.jaspertable.service.datasource;
+
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Column indexes of the fields declared by a compiled template, resolved once per template.
+ * <p>
+ * The field names come from the compiled template, and the fill asks for values with the same
+ * string instances, so a lookup hits the cached hash code and the identity check of
+ * {@link String#equals(Object)} instead of comparing characters.
+ */
+public final class ColumnLayout {
+
+    private static final Map<JasperReport, ColumnLayout> LAYOUTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+
+    private ColumnLayout(JRField[] fields) {
+        int count = fields == null ? 0 : fields.length;
+        this.names = new String[count];
+        this.indexes = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            names[i] = fields[i].getName();
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Returns the layout of a template, resolving it on first use.
+     *
+     * @param report the compiled template
+     * @return the layout of its main dataset fields
+     */
+    public static ColumnLayout of(JasperReport report) {
+        return LAYOUTS.computeIfAbsent(report, template -> new ColumnLayout(template.getFields()));
+    }
+
+    /**
+     * Returns the column of a field.
+     *
+     * @param name the field name
+     * @return the column index, or {@code -1} if the template does not declare the field
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the column of a field, checking the expected column first. The fill reads fields in
+     * declaration order with the name instances of the compiled template, so the expected column
+     * usually matches by identity and the name is only hashed when it does not.
+     *
+     * @param name     the field name
+     * @param expected the column the field is expected at, e.g. the one after the field read last
+     * @return the column index, or {@code -1} if the template does not declare the field
+     */
+    public int columnOf(String name, int expected) {
+        if (expected < names.length && names[expected] == name) {
+            return expected;
+        }
+        return indexOf(name);
+    }
+
+    /**
+     * Returns the name of a column.
+     *
+     * @param index the column index
+     * @return the field name
+     */
+    public String nameOf(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of declared fields
+     */
+    public int size() {
+        return names.length;
+    }
+}
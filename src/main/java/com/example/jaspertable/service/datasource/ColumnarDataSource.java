@@ -0,0 +1,51 @@
+package com.example.jaspertable.service.datasource;
+
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+/**
+ * Data source over a range of rows of a {@link ColumnarTable}. Field values are read from the
+ * column arrays by index instead of from a map per row; fields the template does not declare read
+ * as {@code null}, as with a map that lacks the key.
+ * <p>
+ * The fill reads the fields of each record in the order the template declares them, which is the
+ * order of the {@link ColumnLayout}, so each field is expected at the column after the previous one
+ * and is only looked up by name if the template reads it out of order.
+ */
+public class ColumnarDataSource implements JRRewindableDataSource {
+
+    private final ColumnarTable table;
+    private final int from;
+    private final int to;
+    private int current;
+    private int nextColumn;
+
+    ColumnarDataSource(ColumnarTable table, int from, int to) {
+        this.table = table;
+        this.from = from;
+        this.to = to;
+        this.current = from - 1;
+    }
+
+    @Override
+    public boolean next() {
+        if (current + 1 >= to) {
+            return false;
+        }
+        current++;
+        nextColumn = 0;
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) {
+        int column = table.layout().columnOf(field.getName(), nextColumn);
+        nextColumn = column + 1;
+        return column < 0 ? null : table.value(column, current);
+    }
+
+    @Override
+    public void moveFirst() {
+        current = from - 1;
+    }
+}
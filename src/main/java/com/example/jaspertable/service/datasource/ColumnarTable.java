@@ -0,0 +1,96 @@
+package com.example.jaspertable.service.datasource;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Rows of one template stored column by column, with one value array per declared field.
+ * <p>
+ * Values of keys the template does not declare are dropped when a row is added, so the table holds
+ * exactly what the fill can read and no per-row map is kept alive during the fill.
+ */
+public class ColumnarTable {
+
+    private final ColumnLayout layout;
+    private final Object[][] columns;
+    private int rowCount;
+
+    /**
+     * @param layout       the columns of the template
+     * @param expectedRows the number of rows that will be added; the table grows beyond it if needed
+     */
+    public ColumnarTable(ColumnLayout layout, int expectedRows) {
+        this.layout = layout;
+        this.columns = new Object[layout.size()][Math.max(1, expectedRows)];
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param row the values by field name, may be {@code null} for a row without values
+     * @return the index of the row
+     */
+    public int add(Map<String, Object> row) {
+        if (columns.length > 0 && rowCount == columns[0].length) {
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], rowCount * 2);
+            }
+        }
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][rowCount] = row == null ? null : row.get(layout.nameOf(column));
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Removes all rows, keeping the column arrays for the rows added next. Data sources over the
+     * removed rows must no longer be read.
+     */
+    public void clear() {
+        for (Object[] column : columns) {
+            Arrays.fill(column, 0, rowCount, null);
+        }
+        rowCount = 0;
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns a data source over a single row, e.g. for one section of the master report.
+     *
+     * @param index the row index
+     * @return a data source with one record
+     */
+    public ColumnarDataSource row(int index) {
+        return rows(index, index + 1);
+    }
+
+    /**
+     * Returns a data source over a range of rows.
+     *
+     * @param from the first row, inclusive
+     * @param to   the last row, exclusive
+     * @return a data source over the rows
+     */
+    public ColumnarDataSource rows(int from, int to) {
+        if (from < 0 || to > rowCount || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + "-" + to + " of " + rowCount);
+        }
+        return new ColumnarDataSource(this, from, to);
+    }
+
+    ColumnLayout layout() {
+        return layout;
+    }
+
+    Object value(int column, int row) {
+        return columns[column][row];
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.jaspertable.service.datasource;
+
+import com.example.jaspertable.service.ImagePreprocessor;
+import com.example.jaspertable.service.PdfProfile;
+import com.example.jaspertable.service.PriorityScheduler;
+import com.example.jaspertable.service.TemplateBulkhead;
+import com.example.jaspertable.service.TemplateRegistry;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link SectionDataSource} that reads the request body lazily while the master report is filled.
+ * <p>
+ * The body has the same shape as for the regular endpoint, {@code {"tz": [{...}, {...}], "res-1": [...]}},
+ * but only the row that is currently being filled is materialized, so heap usage is bounded by the
+ * largest row rather than by the whole request. The rows of a template are filled one after the
+ * other, so only the bulkhead permit of the template being read is held; the previous one is
+ * released before the next template's permit is acquired. While a permit has to be waited for,
+ * the render slot is given back, so that other documents can be filled meanwhile.
+ */
+@Slf4j
+public class JsonStreamSectionDataSource extends SectionDataSource {
+
+    private static final TypeReference<Map<String, Object>> ROW_TYPE = new TypeReference<>() {
+    };
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private final TemplateRegistry templateRegistry;
+    private final ImagePreprocessor imagePreprocessor;
+    private final PdfProfile profile;
+    private final TemplateBulkhead.Permits permits;
+    private final PriorityScheduler.Slot slot;
+
+    private boolean started;
+    private String templateName;
+    private String normalizedName;
+    private JasperReport template;
+    /** Holds the current row only; it is overwritten once the master has filled the section. */
+    private ColumnarTable table;
+    private final Map<String, Long> rowCounts = new LinkedHashMap<>();
+
+    /**
+     * @param parser            parser positioned before the root object of the body
+     * @param objectMapper      mapper used to bind single rows
+     * @param templateRegistry  registry the section templates are resolved from
+     * @param imagePreprocessor prepares the image fields of each row
+     * @param profile           the PDF profile the images are prepared for
+     * @param permits           bulkhead permits, holding the one of the template being read
+     * @param slot              the render slot of the fill, released while waiting for a permit
+     */
+    public JsonStreamSectionDataSource(JsonParser parser, ObjectMapper objectMapper, TemplateRegistry templateRegistry,
+                                       ImagePreprocessor imagePreprocessor, PdfProfile profile,
+                                       TemplateBulkhead.Permits permits, PriorityScheduler.Slot slot) {
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        this.templateRegistry = templateRegistry;
+        this.imagePreprocessor = imagePreprocessor;
+        this.profile = profile;
+        this.permits = permits;
+        this.slot = slot;
+    }
+
+    /**
+     * Returns the number of rows read so far per template, in the order the templates appeared.
+     *
+     * @return the row counts by normalized template name
+     */
+    public Map<String, Long> getRowCounts() {
+        return rowCounts;
+    }
+
+    @Override
+    public boolean next() throws JRException {
+        if (stopped) {
+            return false;
+        }
+        try {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Report data must be a JSON object of template arrays");
+                }
+            }
+            while (true) {
+                if (template != null) {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.START_OBJECT) {
+                        Map<String, Object> row = imagePreprocessor.prepare(normalizedName, template,
+                                objectMapper.readValue(parser, ROW_TYPE), profile);
+                        log.trace("Read row {} for template '{}'", sectionCount + 1, templateName);
+                        rowCounts.merge(normalizedName, 1L, Long::sum);
+                        table.clear();
+                        return advance(template, table.row(table.add(row)));
+                    }
+                    if (token != JsonToken.END_ARRAY) {
+                        throw new JsonParseException(parser, "Rows of '" + templateName + "' must be JSON objects, got " + token);
+                    }
+                    // The master fills one section at a time, so the last row of this template is done
+                    permits.release(templateName);
+                    template = null;
+                    table = null;
+                    continue;
+                }
+
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_OBJECT || token == null) {
+                    return false;
+                }
+                String key = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Value of '" + key + "' must be an array of rows");
+                }
+                if ("master".equals(TemplateRegistry.normalize(key))) {
+                    log.warn("Ignoring rows for reserved template key '{}'", key);
+                    parser.skipChildren();
+                    continue;
+                }
+                // Checked first, so that an unknown name is rejected before it reaches the bulkhead
+                if (!templateRegistry.exists(key)) {
+                    throw new IllegalArgumentException("Unknown template: " + key);
+                }
+                JasperReport next = templateRegistry.get(key);
+                if (!permits.tryAcquire(key)) {
+                    slot.releaseWhile(() -> permits.acquire(key));
+                }
+                templateName = key;
+                template = next;
+                table = new ColumnarTable(ColumnLayout.of(next), 1);
+                normalizedName = TemplateRegistry.normalize(key);
+                rowCounts.putIfAbsent(normalizedName, 0L);
+                log.debug("Streaming rows for template '{}'", key);
+            }
+        } catch (IOException e) {
+            throw new JRException("Failed to read report data", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.jaspertable.service.datasource;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JasperReport;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link SectionDataSource} over sections that were prepared up front.
+ */
+public class ListSectionDataSource extends SectionDataSource {
+
+    private final List<JasperReport> reports = new ArrayList<>();
+    private final List<JRDataSource> dataSources = new ArrayList<>();
+    private Iterator<JasperReport> reportIterator;
+    private Iterator<JRDataSource> dataSourceIterator;
+
+    /**
+     * Appends a section.
+     *
+     * @param report     the compiled template of the section
+     * @param dataSource the data the template is filled with
+     */
+    public void add(JasperReport report, JRDataSource dataSource) {
+        reports.add(report);
+        dataSources.add(dataSource);
+    }
+
+    /**
+     * Appends all sections of another data source that has not been read yet.
+     *
+     * @param other the sections to append
+     */
+    public void addAll(ListSectionDataSource other) {
+        reports.addAll(other.reports);
+        dataSources.addAll(other.dataSources);
+    }
+
+    /**
+     * Returns the number of sections added.
+     *
+     * @return the section count
+     */
+    public int size() {
+        return reports.size();
+    }
+
+    @Override
+    public boolean next() {
+        if (reportIterator == null) {
+            reportIterator = reports.iterator();
+            dataSourceIterator = dataSources.iterator();
+        }
+        if (stopped || !reportIterator.hasNext()) {
+            return false;
+        }
+        return advance(reportIterator.next(), dataSourceIterator.next());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.jaspertable.service.datasource;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+
+/**
+ * Data source of {@code master.jrxml}: every record is one section of the document, i.e. one
+ * compiled template together with the data source it is filled with as a subreport.
+ */
+public abstract class SectionDataSource implements JRDataSource {
+
+    /** Master field holding the compiled template of the current section. */
+    public static final String SUBREPORT_SOURCE_FIELD = "SubreportSource";
+
+    /** Master field holding the data source of the current section. */
+    public static final String SUBREPORT_DATA_SOURCE_FIELD = "SubreportDataSource";
+
+    protected JasperReport currentReport;
+    protected JRDataSource currentDataSource;
+    protected int sectionCount;
+    protected volatile boolean stopped;
+
+    /**
+     * Returns the number of sections produced so far.
+     *
+     * @return the section count
+     */
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    /**
+     * Ends the data source after the current section, e.g. once all pages that will be exported
+     * have been filled.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        switch (field.getName()) {
+            case SUBREPORT_SOURCE_FIELD:
+                return currentReport;
+            case SUBREPORT_DATA_SOURCE_FIELD:
+                return currentDataSource;
+            default:
+                throw new JRException("Unknown master field: " + field.getName());
+        }
+    }
+
+    protected boolean advance(JasperReport report, JRDataSource dataSource) {
+        currentReport = report;
+        currentDataSource = dataSource;
+        sectionCount++;
+        return true;
+    }
+}
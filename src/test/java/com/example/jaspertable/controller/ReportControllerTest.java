@@ -0,0 +1,70 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.service.BatchReportService;
+import com.example.jaspertable.service.JReportService;
+import com.example.jaspertable.service.ReportMetrics;
+import com.example.jaspertable.service.ReportPayloadReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ReportController.class)
+class ReportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private JReportService jReportService;
+
+    @MockitoBean
+    private BatchReportService batchReportService;
+
+    @MockitoBean
+    private ReportPayloadReader reportPayloadReader;
+
+    @MockitoBean
+    private ReportMetrics reportMetrics;
+
+    @Test
+    void unknownFormatIsBadRequest() throws Exception {
+        mockMvc.perform(post("/generate/report/orders").param("format", "odt")
+                        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unsupported export format: odt"));
+        verifyNoInteractions(jReportService, reportPayloadReader);
+    }
+
+    @Test
+    void malformedPageRangeIsBadRequest() throws Exception {
+        mockMvc.perform(post("/generate/report/orders").param("pages", "3-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Malformed page range: 3-1"));
+        verifyNoInteractions(jReportService, reportPayloadReader);
+    }
+
+    @Test
+    void unknownProfileIsBadRequest() throws Exception {
+        mockMvc.perform(post("/generate/report/orders").param("profile", "tiny")
+                        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(jReportService, reportPayloadReader);
+    }
+
+    @Test
+    void streamedReportRejectsMalformedPageRange() throws Exception {
+        mockMvc.perform(post("/generate/report/orders/stream").param("pages", "0")
+                        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(jReportService);
+    }
+}
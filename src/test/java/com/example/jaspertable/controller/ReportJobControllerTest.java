@@ -0,0 +1,84 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.service.ReportJob;
+import com.example.jaspertable.service.ReportJobService;
+import com.example.jaspertable.service.ReportMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ReportJobController.class)
+class ReportJobControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ReportJobService reportJobService;
+
+    @MockitoBean
+    private ReportMetrics reportMetrics;
+
+    @Test
+    void rejectedJobIsServiceUnavailableWithRetryAfter() throws Exception {
+        ReportJob job = job(ReportJob.Status.REJECTED);
+        when(job.getError()).thenReturn("The service is saturated with 'bulk' reports, retry later");
+        when(job.getRetryAfterSeconds()).thenReturn(120L);
+
+        mockMvc.perform(get("/jobs/42"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "120"))
+                .andExpect(jsonPath("$.status").value("REJECTED"))
+                .andExpect(jsonPath("$.error").value("The service is saturated with 'bulk' reports, retry later"));
+    }
+
+    @Test
+    void failedJobIsInternalServerError() throws Exception {
+        job(ReportJob.Status.FAILED);
+
+        mockMvc.perform(get("/jobs/42"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.status").value("FAILED"));
+    }
+
+    @Test
+    void pendingJobIsAccepted() throws Exception {
+        job(ReportJob.Status.RUNNING);
+
+        mockMvc.perform(get("/jobs/42"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
+    @Test
+    void unknownJobIsNotFound() throws Exception {
+        when(reportJobService.find("42")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/jobs/42"))
+                .andExpect(status().isNotFound());
+    }
+
+    private ReportJob job(ReportJob.Status status) {
+        ReportJob job = mock(ReportJob.class);
+        when(job.getId()).thenReturn("42");
+        when(job.getFileName()).thenReturn("orders");
+        when(job.getStatus()).thenReturn(status);
+        when(job.getCreatedAt()).thenReturn(Instant.now());
+        when(reportJobService.find("42")).thenReturn(Optional.of(job));
+        return job;
+    }
+}
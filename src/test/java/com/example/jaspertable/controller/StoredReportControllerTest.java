@@ -0,0 +1,180 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.service.DocumentStore;
+import com.example.jaspertable.service.ReportMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(StoredReportController.class)
+class StoredReportControllerTest {
+
+    private static final String ID = "0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final String BODY = "0123456789";
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-05-01T10:15:30Z");
+    private static final String URL = "/reports/" + ID;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DocumentStore documentStore;
+
+    @MockitoBean
+    private ReportMetrics reportMetrics;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void storeDocument() throws IOException {
+        Path file = Files.writeString(directory.resolve("results.pdf"), BODY, StandardCharsets.US_ASCII);
+        when(documentStore.isEnabled()).thenReturn(true);
+        when(documentStore.find(anyString())).thenReturn(Optional.empty());
+        when(documentStore.find(ID)).thenReturn(Optional.of(
+                new DocumentStore.StoredDocument(ID, file, "results.pdf", BODY.length(), LAST_MODIFIED)));
+    }
+
+    @Test
+    void wholeDocument() throws Exception {
+        mockMvc.perform(get(URL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + ID + "\""))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, BODY.length()))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"results.pdf\""))
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void closedRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void openRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=7-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+                .andExpect(content().string("789"));
+    }
+
+    @Test
+    void suffixRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+                .andExpect(content().string("789"));
+    }
+
+    @Test
+    void suffixLongerThanDocumentIsWholeDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=-50"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/10"))
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void rangeEndIsClampedToDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=8-100"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 8-9/10"))
+                .andExpect(content().string("89"));
+    }
+
+    @Test
+    void rangeBeyondDocumentIsNotSatisfiable() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-20"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void severalRangesGetWholeDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void malformedRangeGetsWholeDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "pages=1-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void ifRangeWithCurrentEtag() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5-").header(HttpHeaders.IF_RANGE, "\"" + ID + "\""))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("56789"));
+    }
+
+    @Test
+    void ifRangeWithOtherEtagGetsWholeDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5-").header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void ifRangeWithLastModified() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5-").header(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED)))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("56789"));
+    }
+
+    @Test
+    void ifRangeWithOtherDateGetsWholeDocument() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5-")
+                        .header(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED.minusSeconds(60))))
+                .andExpect(status().isOk())
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void unknownDocument() throws Exception {
+        mockMvc.perform(get("/reports/7c9e6679-7425-40de-944b-e07fc1f90ae7"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void disabledStore() throws Exception {
+        when(documentStore.isEnabled()).thenReturn(false);
+
+        mockMvc.perform(get(URL))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+}
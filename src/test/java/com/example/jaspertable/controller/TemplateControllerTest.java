@@ -0,0 +1,75 @@
+package com.example.jaspertable.controller;
+
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import com.example.jaspertable.service.ReportMetrics;
+import com.example.jaspertable.service.TemplateSchema;
+import com.example.jaspertable.service.TemplateSchemaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TemplateController.class)
+class TemplateControllerTest {
+
+    private static final TemplateSchema SCHEMA = new TemplateSchema("results", 3, "5d41402abc4b2a76",
+            List.of(new TemplateSchema.Field("fullName", "java.lang.String", false, "Full name")));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TemplateSchemaService templateSchemaService;
+
+    @MockitoBean
+    private ReportMetrics reportMetrics;
+
+    @Test
+    void schemaCarriesFingerprintAsEtag() throws Exception {
+        when(templateSchemaService.schema("results")).thenReturn(SCHEMA);
+
+        mockMvc.perform(get("/templates/results/schema"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5d41402abc4b2a76\""))
+                .andExpect(jsonPath("$.template").value("results"))
+                .andExpect(jsonPath("$.fields[0].name").value("fullName"))
+                .andExpect(jsonPath("$.fields[0].type").value("java.lang.String"));
+    }
+
+    @Test
+    void unchangedSchemaIsNotModified() throws Exception {
+        when(templateSchemaService.schema("results")).thenReturn(SCHEMA);
+
+        mockMvc.perform(get("/templates/results/schema").header(HttpHeaders.IF_NONE_MATCH, "\"5d41402abc4b2a76\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void changedSchemaIsSentAgain() throws Exception {
+        when(templateSchemaService.schema("results")).thenReturn(SCHEMA);
+
+        mockMvc.perform(get("/templates/results/schema").header(HttpHeaders.IF_NONE_MATCH, "\"0000000000000000\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5d41402abc4b2a76\""));
+    }
+
+    @Test
+    void unknownTemplateIsNotFound() throws Exception {
+        when(templateSchemaService.schema("nope")).thenThrow(ResourceNotFoundException.create("Template", "name", "nope"));
+
+        mockMvc.perform(get("/templates/nope/schema"))
+                .andExpect(status().isNotFound());
+    }
+}
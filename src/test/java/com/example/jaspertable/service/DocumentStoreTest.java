@@ -0,0 +1,84 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentStoreTest {
+
+    private static final byte[] PDF = "%PDF-1.7".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    private Path root;
+
+    private DocumentStore documentStore;
+
+    @BeforeEach
+    void createStore() {
+        ReportProperties properties = new ReportProperties();
+        properties.getStore().setEnabled(true);
+        properties.getStore().setDir(root.toString());
+        documentStore = new DocumentStore(properties);
+    }
+
+    @Test
+    void sameCacheKeySharesId() {
+        assertThat(documentStore.idFor("results:abc")).isEqualTo(documentStore.idFor("results:abc"))
+                .isNotEqualTo(documentStore.idFor("results:abd"));
+    }
+
+    @Test
+    void savedDocumentIsFound() throws IOException {
+        String id = documentStore.idFor("results:abc");
+
+        assertThat(documentStore.save(id, "Results", PDF)).isTrue();
+
+        DocumentStore.StoredDocument document = documentStore.find(id).orElseThrow();
+        assertThat(document.fileName()).isEqualTo("results.pdf");
+        assertThat(Files.readAllBytes(document.path())).isEqualTo(PDF);
+    }
+
+    @Test
+    void savingAgainKeepsOneCopyAndRestartsTtl() throws IOException {
+        String id = documentStore.idFor("results:abc");
+        documentStore.save(id, "results", PDF);
+        Path file = documentStore.find(id).orElseThrow().path();
+        FileTime old = FileTime.from(Instant.now().minus(30, ChronoUnit.MINUTES));
+        Files.setLastModifiedTime(file, old);
+
+        assertThat(documentStore.save(id, "results", PDF)).isTrue();
+
+        assertThat(Files.getLastModifiedTime(file)).isGreaterThan(old);
+        try (var files = Files.list(root.resolve(id))) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    void discardedDraftLeavesNothing() throws IOException {
+        String id = documentStore.newId();
+        try (DocumentStore.Draft draft = documentStore.create(id, "results")) {
+            draft.out().write(PDF);
+        }
+
+        assertThat(documentStore.find(id)).isEmpty();
+        assertThat(root.resolve(id)).doesNotExist();
+    }
+
+    @Test
+    void unknownIdIsNotFound() throws IOException {
+        assertThat(documentStore.find("not-an-id")).isEmpty();
+        assertThat(documentStore.find(documentStore.newId())).isEmpty();
+    }
+}
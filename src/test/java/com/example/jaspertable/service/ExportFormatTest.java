@@ -0,0 +1,53 @@
+package com.example.jaspertable.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ExportFormatTest {
+
+    @Test
+    void defaultsToPdf() {
+        assertThat(ExportFormat.negotiate(null, null)).isEqualTo(ExportFormat.PDF);
+        assertThat(ExportFormat.negotiate(" ", "")).isEqualTo(ExportFormat.PDF);
+    }
+
+    @Test
+    void formatParameterIgnoresCaseAndWhitespace() {
+        assertThat(ExportFormat.negotiate(" DOCX ", null)).isEqualTo(ExportFormat.DOCX);
+    }
+
+    @Test
+    void formatParameterWinsOverAccept() {
+        assertThat(ExportFormat.negotiate("xlsx", "text/html")).isEqualTo(ExportFormat.XLSX);
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ExportFormat.negotiate("odt", null))
+                .withMessageContaining("odt");
+    }
+
+    @Test
+    void acceptPrefersHighestQuality() {
+        assertThat(ExportFormat.negotiate(null, "text/html;q=0.5, image/png")).isEqualTo(ExportFormat.PNG);
+    }
+
+    @Test
+    void acceptSkipsUnsupportedTypes() {
+        assertThat(ExportFormat.negotiate(null, "application/xml, text/html;q=0.8")).isEqualTo(ExportFormat.HTML);
+    }
+
+    @Test
+    void wildcardAcceptFallsBackToPdf() {
+        assertThat(ExportFormat.negotiate(null, "*/*, text/html;q=0.1")).isEqualTo(ExportFormat.PDF);
+        assertThat(ExportFormat.negotiate(null, "image/*")).isEqualTo(ExportFormat.PDF);
+    }
+
+    @Test
+    void malformedAcceptFallsBackToPdf() {
+        assertThat(ExportFormat.negotiate(null, "not a media type")).isEqualTo(ExportFormat.PDF);
+    }
+}
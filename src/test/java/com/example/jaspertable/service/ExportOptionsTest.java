@@ -0,0 +1,97 @@
+package com.example.jaspertable.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ExportOptionsTest {
+
+    @Test
+    void defaultsToWholeDocumentAsPdf() {
+        ExportOptions options = ExportOptions.of(null, null, null, null);
+
+        assertThat(options).isEqualTo(ExportOptions.DEFAULT);
+        assertThat(options.isDefault()).isTrue();
+        assertThat(options.isWholeDocument()).isTrue();
+        assertThat(options.isBounded()).isFalse();
+    }
+
+    @Test
+    void singlePage() {
+        ExportOptions options = ExportOptions.of(null, "2", null, null);
+
+        assertThat(options.firstPage()).isEqualTo(2);
+        assertThat(options.lastPage()).isEqualTo(2);
+        assertThat(options.isBounded()).isTrue();
+        assertThat(options.isDefault()).isFalse();
+    }
+
+    @Test
+    void closedRange() {
+        ExportOptions options = ExportOptions.of(null, " 1 - 3 ", null, null);
+
+        assertThat(options.firstPage()).isEqualTo(1);
+        assertThat(options.lastPage()).isEqualTo(3);
+        assertThat(options.isWholeDocument()).isFalse();
+    }
+
+    @Test
+    void openRange() {
+        ExportOptions options = ExportOptions.of(null, "4-", null, null);
+
+        assertThat(options.firstPage()).isEqualTo(4);
+        assertThat(options.lastPage()).isEqualTo(Integer.MAX_VALUE);
+        assertThat(options.isBounded()).isFalse();
+        assertThat(options.isWholeDocument()).isFalse();
+    }
+
+    @Test
+    void firstPageFromOpenRangeIsWholeDocument() {
+        assertThat(ExportOptions.of(null, "1-", null, null).isWholeDocument()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-3", "3-1", "a", "1-b", "1-2-3", "-"})
+    void malformedRangeIsRejected(String pages) {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ExportOptions.of(null, pages, null, null))
+                .withMessageContaining("Malformed page range");
+    }
+
+    @Test
+    void pngExportsFirstPageOfRange() {
+        ExportOptions options = ExportOptions.of("png", "2-5", null, null);
+
+        assertThat(options.format()).isEqualTo(ExportFormat.PNG);
+        assertThat(options.firstPage()).isEqualTo(2);
+        assertThat(options.lastPage()).isEqualTo(2);
+    }
+
+    @Test
+    void formatFromAccept() {
+        assertThat(ExportOptions.of(null, null, null, "text/html").format()).isEqualTo(ExportFormat.HTML);
+    }
+
+    @Test
+    void profile() {
+        assertThat(ExportOptions.of(null, null, "Smallest", null).profile()).isEqualTo(PdfProfile.SMALLEST);
+        assertThat(ExportOptions.of(null, null, "", null).profile()).isNull();
+    }
+
+    @Test
+    void unknownProfileIsRejected() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ExportOptions.of(null, null, "tiny", null))
+                .withMessageContaining("tiny");
+    }
+
+    @Test
+    void withProfileKeepsRange() {
+        ExportOptions options = ExportOptions.of("pdf", "2-3", null, null).withProfile(PdfProfile.FAST);
+
+        assertThat(options).isEqualTo(new ExportOptions(ExportFormat.PDF, 2, 3, PdfProfile.FAST));
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrioritySchedulerTest {
+
+    private final ReportProperties properties = new ReportProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void cleanUp() {
+        RequestContextHolder.resetRequestAttributes();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void freedSlotsAreSharedByWeight() throws Exception {
+        PriorityScheduler scheduler = scheduler(1, Duration.ofSeconds(30), 50);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> waiters = new ArrayList<>();
+
+        request("interactive");
+        try (PriorityScheduler.Slot ignored = scheduler.admit()) {
+            for (int i = 0; i < 8; i++) {
+                waiters.add(waiter(scheduler, "interactive", started));
+            }
+            for (int i = 0; i < 3; i++) {
+                waiters.add(waiter(scheduler, null, started));
+            }
+            awaitQueued("interactive", 8);
+            awaitQueued("bulk", 3);
+        }
+        for (Future<?> waiter : waiters) {
+            waiter.get(5, TimeUnit.SECONDS);
+        }
+
+        // Bulk was idle, so it catches up to the interactive pass and goes first, then gets every fifth slot
+        assertThat(started).containsExactly("bulk", "interactive", "interactive", "interactive", "interactive",
+                "bulk", "interactive", "interactive", "interactive", "interactive", "bulk");
+    }
+
+    @Test
+    void documentPastItsDeadlineIsRejected() {
+        PriorityScheduler scheduler = scheduler(1, Duration.ofMillis(100), 50);
+
+        request("interactive");
+        try (PriorityScheduler.Slot ignored = scheduler.admit()) {
+            assertThatThrownBy(scheduler::admit)
+                    .isInstanceOf(TooManyRequestsException.class)
+                    .hasMessageContaining("saturated");
+        }
+        assertThat(meterRegistry.get("report.priority.wait")
+                .tags("class", "interactive", "outcome", "expired").timer().count()).isEqualTo(1);
+        assertThat(queued("interactive")).isZero();
+    }
+
+    @Test
+    void fullQueueIsRejectedAtOnce() {
+        PriorityScheduler scheduler = scheduler(1, Duration.ofSeconds(30), 0);
+
+        request("interactive");
+        try (PriorityScheduler.Slot ignored = scheduler.admit()) {
+            assertThatThrownBy(scheduler::admit)
+                    .isInstanceOf(TooManyRequestsException.class)
+                    .hasMessageContaining("Too many queued 'interactive' reports")
+                    .extracting(e -> ((TooManyRequestsException) e).getRetryAfterSeconds())
+                    .isEqualTo(30L);
+        }
+        assertThat(meterRegistry.get("report.priority.wait")
+                .tags("class", "interactive", "outcome", "rejected").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownClassIsRejected() {
+        PriorityScheduler scheduler = scheduler(1, Duration.ofSeconds(30), 50);
+
+        request("urgent");
+
+        assertThatThrownBy(scheduler::admit)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown priority class: urgent, expected one of interactive, bulk");
+    }
+
+    @Test
+    void clientClassTakesPrecedenceOverHeader() {
+        properties.getPriority().setClients(Map.of("backoffice", "bulk"));
+        PriorityScheduler scheduler = scheduler(1, Duration.ofSeconds(30), 50);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Client-Id", "BackOffice");
+        request.addHeader("X-Report-Priority", "interactive");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        try (PriorityScheduler.Slot ignored = scheduler.admit()) {
+            assertThat(running("bulk")).isEqualTo(1);
+            assertThat(running("interactive")).isZero();
+        }
+        assertThat(running("bulk")).isZero();
+    }
+
+    @Test
+    void disabledSchedulerDoesNotWait() {
+        properties.getPriority().setEnabled(false);
+        PriorityScheduler scheduler = scheduler(1, Duration.ofMillis(1), 0);
+
+        try (PriorityScheduler.Slot first = scheduler.admit(); PriorityScheduler.Slot second = scheduler.admit()) {
+            assertThat(running("bulk")).isZero();
+        }
+    }
+
+    @Test
+    void slotIsFreeWhileReleased() {
+        PriorityScheduler scheduler = scheduler(1, Duration.ofMillis(100), 50);
+
+        try (PriorityScheduler.Slot slot = scheduler.admit()) {
+            slot.releaseWhile(() -> {
+                assertThat(running("bulk")).isZero();
+                try (PriorityScheduler.Slot other = scheduler.admit()) {
+                    assertThat(running("bulk")).isEqualTo(1);
+                }
+            });
+            assertThat(running("bulk")).isEqualTo(1);
+        }
+        assertThat(running("bulk")).isZero();
+    }
+
+    private PriorityScheduler scheduler(int concurrency, Duration deadline, int queueCapacity) {
+        ReportProperties.Priority priority = properties.getPriority();
+        priority.setConcurrency(concurrency);
+        // Insertion order decides ties between classes with the same pass
+        Map<String, ReportProperties.PriorityClass> classes = new LinkedHashMap<>();
+        classes.put("interactive", new ReportProperties.PriorityClass(4, queueCapacity, deadline));
+        classes.put("bulk", new ReportProperties.PriorityClass(1, queueCapacity, deadline));
+        priority.setClasses(classes);
+        return new PriorityScheduler(properties, meterRegistry);
+    }
+
+    /**
+     * Queues for a slot in the named class, or in the background class if {@code null}, and records
+     * the class once started.
+     */
+    private Future<?> waiter(PriorityScheduler scheduler, String priorityClass, List<String> started) {
+        return executor.submit(() -> {
+            if (priorityClass != null) {
+                request(priorityClass);
+            }
+            try (PriorityScheduler.Slot ignored = scheduler.admit()) {
+                started.add(priorityClass == null ? "bulk" : priorityClass);
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        });
+    }
+
+    private static void request(String priorityClass) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Report-Priority", priorityClass);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private void awaitQueued(String priorityClass, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued(priorityClass) < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(queued(priorityClass)).isEqualTo(count);
+    }
+
+    private double queued(String priorityClass) {
+        return meterRegistry.get("report.priority.queued").tag("class", priorityClass).gauge().value();
+    }
+
+    private double running(String priorityClass) {
+        return meterRegistry.get("report.priority.running").tag("class", priorityClass).gauge().value();
+    }
+}
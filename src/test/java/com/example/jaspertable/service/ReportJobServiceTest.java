@@ -0,0 +1,76 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.exception.TooManyRequestsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportJobServiceTest {
+
+    private final JReportService jReportService = mock(JReportService.class);
+    private final ReportJobService service = new ReportJobService(jReportService, mock(TemplateSchemaService.class),
+            new ReportProperties());
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void completedJobHoldsThePdf() throws Exception {
+        when(jReportService.generatePdf(eq("orders"), any())).thenReturn(new byte[]{1, 2, 3});
+
+        ReportJob job = awaitFinished(service.submit("orders", data()));
+
+        assertThat(job.getStatus()).isEqualTo(ReportJob.Status.COMPLETED);
+        assertThat(job.getResult()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void saturatedJobIsRejectedNotFailed() throws Exception {
+        when(jReportService.generatePdf(eq("orders"), any()))
+                .thenThrow(new TooManyRequestsException("The service is saturated with 'bulk' reports, retry later", 120));
+
+        ReportJob job = awaitFinished(service.submit("orders", data()));
+
+        assertThat(job.getStatus()).isEqualTo(ReportJob.Status.REJECTED);
+        assertThat(job.getRetryAfterSeconds()).isEqualTo(120);
+        assertThat(job.getError()).isEqualTo("The service is saturated with 'bulk' reports, retry later");
+    }
+
+    @Test
+    void renderErrorFailsTheJob() throws Exception {
+        when(jReportService.generatePdf(eq("orders"), any())).thenThrow(new IOException("boom"));
+
+        ReportJob job = awaitFinished(service.submit("orders", data()));
+
+        assertThat(job.getStatus()).isEqualTo(ReportJob.Status.FAILED);
+        assertThat(job.getError()).isEqualTo("boom");
+    }
+
+    private static LinkedHashMap<String, List<Map<String, Object>>> data() {
+        LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+        data.put("orders", List.of(Map.of("id", 1)));
+        return data;
+    }
+
+    private static ReportJob awaitFinished(ReportJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.isFinished()).isTrue();
+        return job;
+    }
+}
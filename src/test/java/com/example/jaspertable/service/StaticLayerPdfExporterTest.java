@@ -0,0 +1,184 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import com.example.jaspertable.service.datasource.ColumnLayout;
+import com.example.jaspertable.service.datasource.ColumnarTable;
+import com.example.jaspertable.service.datasource.ListSectionDataSource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lowagie.text.pdf.PdfDictionary;
+import com.lowagie.text.pdf.PdfName;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaticLayerPdfExporterTest {
+
+    private static final String IGNORE_MISSING_FONT = "net.sf.jasperreports.awt.ignore.missing.font";
+
+    private final ReportProperties properties = new ReportProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StaticLayerCache staticLayerCache;
+    private TemplateRegistry templateRegistry;
+    private ImagePreprocessor imagePreprocessor;
+
+    @BeforeAll
+    static void fonts() {
+        // The templates use Times New Roman, which only the Docker image installs; the layout may
+        // differ without it, but both exports are compared on the same fill
+        DefaultJasperReportsContext.getInstance().setProperty(IGNORE_MISSING_FONT, "true");
+    }
+
+    @AfterAll
+    static void restoreFonts() {
+        DefaultJasperReportsContext.getInstance().removeProperty(IGNORE_MISSING_FONT);
+    }
+
+    @BeforeEach
+    void services() {
+        properties.getStaticLayers().setReports(Set.of("checklist", "forma1", "anketa"));
+        ReportMetrics reportMetrics = new ReportMetrics(meterRegistry);
+        staticLayerCache = new StaticLayerCache(properties, meterRegistry);
+        templateRegistry = new TemplateRegistry(properties, reportMetrics, new SharedCache(properties), staticLayerCache);
+        imagePreprocessor = new ImagePreprocessor(properties, reportMetrics);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"checklist", "forma1", "anketa"})
+    void layeredPagesShowTheSameText(String report) throws Exception {
+        LinkedHashMap<String, List<Map<String, Object>>> data = sample(report);
+        JasperPrint print = fill(data);
+
+        byte[] plainPdf = export(new JRPdfExporter(), print);
+        byte[] layeredPdf = export(new StaticLayerPdfExporter(staticLayerCache), print);
+        List<String> plain = pageText(plainPdf);
+        List<String> layered = pageText(layeredPdf);
+
+        assertThat(layerRequests("miss")).isPositive();
+        assertThat(drawsForm(plainPdf)).isFalse();
+        assertThat(drawsForm(layeredPdf)).isTrue();
+        assertThat(plain).isNotEmpty().allMatch(page -> !page.isEmpty());
+        assertThat(layered).isEqualTo(plain);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"checklist", "forma1", "anketa"})
+    void secondDocumentReusesTheLayers(String report) throws Exception {
+        LinkedHashMap<String, List<Map<String, Object>>> data = sample(report);
+        List<String> first = pageText(export(new StaticLayerPdfExporter(staticLayerCache), fill(data)));
+        double misses = layerRequests("miss");
+
+        List<String> second = pageText(export(new StaticLayerPdfExporter(staticLayerCache), fill(data)));
+
+        assertThat(layerRequests("hit")).isPositive();
+        assertThat(layerRequests("miss")).isEqualTo(misses);
+        assertThat(second).isEqualTo(first);
+    }
+
+    /**
+     * Fills the master template with one section per row, as {@link JReportService} does.
+     */
+    private JasperPrint fill(LinkedHashMap<String, List<Map<String, Object>>> data) throws JRException {
+        ListSectionDataSource sections = new ListSectionDataSource();
+        for (Map.Entry<String, List<Map<String, Object>>> entry : data.entrySet()) {
+            String name = TemplateRegistry.normalize(entry.getKey());
+            JasperReport template = templateRegistry.get(name);
+            ColumnarTable table = new ColumnarTable(ColumnLayout.of(template), entry.getValue().size());
+            for (Map<String, Object> row : entry.getValue()) {
+                sections.add(template, table.row(table.add(imagePreprocessor.prepare(name, template, row,
+                        PdfProfile.BALANCED))));
+            }
+        }
+        return JasperFillManager.fillReport(templateRegistry.get("master"), new HashMap<>(), sections);
+    }
+
+    private static byte[] export(JRPdfExporter exporter, JasperPrint print) throws JRException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.setExporterInput(new SimpleExporterInput(print));
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+        exporter.exportReport();
+        return out.toByteArray();
+    }
+
+    /**
+     * Extracts the characters of every page, sorted: the layer changes the order texts are drawn in,
+     * and with it where the extractor joins adjacent texts into words.
+     */
+    private static List<String> pageText(byte[] pdf) throws IOException {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            PdfTextExtractor extractor = new PdfTextExtractor(reader);
+            List<String> pages = new ArrayList<>();
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                int[] characters = extractor.getTextFromPage(page).codePoints()
+                        .filter(c -> !Character.isWhitespace(c))
+                        .sorted()
+                        .toArray();
+                pages.add(new String(characters, 0, characters.length));
+            }
+            return pages;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns whether the first page draws a form XObject, i.e. a static layer.
+     */
+    private static boolean drawsForm(byte[] pdf) throws IOException {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            PdfDictionary xObjects = reader.getPageN(1).getAsDict(PdfName.RESOURCES).getAsDict(PdfName.XOBJECT);
+            if (xObjects == null) {
+                return false;
+            }
+            for (PdfName name : xObjects.getKeys()) {
+                PdfDictionary xObject = (PdfDictionary) PdfReader.getPdfObject(xObjects.get(name));
+                if (PdfName.FORM.equals(xObject.getAsName(PdfName.SUBTYPE))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private double layerRequests(String result) {
+        return meterRegistry.get("report.static.requests").tags("cache", "layer", "result", result).counter().count();
+    }
+
+    private static LinkedHashMap<String, List<Map<String, Object>>> sample(String report) throws IOException {
+        try (InputStream in = new ClassPathResource("reports/json/" + report + ".json").getInputStream()) {
+            return new ObjectMapper().readValue(in, new TypeReference<>() {
+            });
+        }
+    }
+}
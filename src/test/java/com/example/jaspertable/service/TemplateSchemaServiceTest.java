@@ -0,0 +1,206 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.exception.InvalidPayloadException;
+import com.example.jaspertable.exception.ResourceNotFoundException;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TemplateSchemaServiceTest {
+
+    private final TemplateRegistry templateRegistry = mock(TemplateRegistry.class);
+    private final ImagePreprocessor imagePreprocessor = mock(ImagePreprocessor.class);
+    private final TemplateSchemaService service = new TemplateSchemaService(templateRegistry, imagePreprocessor);
+
+    @BeforeEach
+    void templates() throws JRException {
+        when(imagePreprocessor.imageFields(any())).thenReturn(Set.of());
+        register("results", "v1", field("fullName", String.class), field("age", Integer.class));
+        register("photos", "v1", field("photo", String.class));
+        when(imagePreprocessor.imageFields(templateRegistry.resolve("photos").report())).thenReturn(Set.of("photo"));
+    }
+
+    @Test
+    void validDataPasses() throws JRException {
+        LinkedHashMap<String, List<Map<String, Object>>> data = data("results",
+                row("fullName", "Ivanov", "age", 42), row("fullName", null, "age", null));
+
+        service.validate(data);
+
+        assertThat(data.get("results")).containsExactly(row("fullName", "Ivanov", "age", 42), row("fullName", null, "age", null));
+    }
+
+    @Test
+    void emptyDataPasses() throws JRException {
+        service.validate(null);
+        service.validate(new LinkedHashMap<>());
+    }
+
+    @Test
+    void unknownTemplatesAreRejectedBeforeAnyIsResolved() throws JRException {
+        LinkedHashMap<String, List<Map<String, Object>>> data = data("results", row("fullName", "Ivanov"));
+        data.put("resutls", List.of(row("fullName", "Petrov")));
+        data.put("other", List.of());
+
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data))
+                .satisfies(e -> assertThat(e.getErrors())
+                        .containsExactly(Map.entry("resutls", "unknown template"), Map.entry("other", "unknown template")));
+        verify(templateRegistry, never()).resolve("results");
+    }
+
+    @Test
+    void typeMismatchesAreReportedByLocation() {
+        LinkedHashMap<String, List<Map<String, Object>>> data = data("results",
+                row("fullName", "Ivanov", "age", 42), row("fullName", 7, "age", "forty"));
+
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data))
+                .satisfies(e -> assertThat(e.getErrors()).containsExactly(
+                        Map.entry("results[1].fullName", "expected java.lang.String, got number"),
+                        Map.entry("results[1].age", "expected java.lang.Integer, got string")))
+                .withMessageStartingWith("Invalid report data: results[1].fullName");
+    }
+
+    @Test
+    void errorsAreCapped() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            rows.add(row("age", "x"));
+        }
+        LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+        data.put("results", rows);
+
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data))
+                .satisfies(e -> assertThat(e.getErrors()).hasSize(50))
+                .withMessageEndingWith("; and 47 more");
+    }
+
+    @Test
+    void nullRowListIsRejected() {
+        LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+        data.put("results", null);
+
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data))
+                .satisfies(e -> assertThat(e.getErrors()).containsExactly(Map.entry("results", "expected an array of rows")));
+    }
+
+    @Test
+    void nullRowsAreSkipped() throws JRException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(null);
+        rows.add(row("age", 1));
+        LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+        data.put("results", rows);
+
+        service.validate(data);
+
+        assertThat(data.get("results")).containsExactly(null, row("age", 1));
+    }
+
+    @Test
+    void undeclaredKeysAreRemoved() throws JRException {
+        LinkedHashMap<String, List<Map<String, Object>>> data = data("results",
+                row("fullName", "Ivanov", "photo", "iVBORw0KGgo=", "comment", List.of(1)));
+
+        service.validate(data);
+
+        assertThat(data.get("results")).containsExactly(row("fullName", "Ivanov"));
+    }
+
+    @Test
+    void binaryImagesMatchImageFields() throws JRException {
+        service.validate(data("photos", row("photo", "data:image/png;base64,iVBORw0KGgo="), row("photo", new byte[]{1})));
+
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data("photos", row("photo", true))))
+                .satisfies(e -> assertThat(e.getErrors())
+                        .containsExactly(Map.entry("photos[0].photo", "expected java.lang.String, got boolean")));
+    }
+
+    @Test
+    void binaryValuesDoNotMatchOtherFields() {
+        assertThatExceptionOfType(InvalidPayloadException.class)
+                .isThrownBy(() -> service.validate(data("results", row("fullName", new byte[]{1}))))
+                .satisfies(e -> assertThat(e.getErrors())
+                        .containsExactly(Map.entry("results[0].fullName", "expected java.lang.String, got binary")));
+    }
+
+    @Test
+    void schemaDescribesDeclaredFields() throws JRException {
+        TemplateSchema schema = service.schema("photos");
+
+        assertThat(schema.template()).isEqualTo("photos");
+        assertThat(schema.fingerprint()).isEqualTo("v1");
+        assertThat(schema.fields()).containsExactly(new TemplateSchema.Field("photo", "java.lang.String", true, null));
+        assertThat(service.schema("results").fields()).extracting(TemplateSchema.Field::name).containsExactly("fullName", "age");
+    }
+
+    @Test
+    void schemaOfUnknownTemplateIsNotFound() {
+        assertThatExceptionOfType(ResourceNotFoundException.class).isThrownBy(() -> service.schema("nope"));
+    }
+
+    @Test
+    void schemaFollowsReplacedTemplate() throws JRException {
+        assertThat(service.schema("results").fingerprint()).isEqualTo("v1");
+
+        register("results", "v2", field("fullName", String.class));
+
+        TemplateSchema schema = service.schema("results");
+        assertThat(schema.fingerprint()).isEqualTo("v2");
+        assertThat(schema.fields()).extracting(TemplateSchema.Field::name).containsExactly("fullName");
+    }
+
+    private void register(String name, String fingerprint, JRField... fields) throws JRException {
+        JasperReport report = mock(JasperReport.class);
+        when(report.getFields()).thenReturn(fields);
+        when(templateRegistry.exists(anyString())).thenAnswer(invocation ->
+                Set.of("results", "photos").contains(invocation.<String>getArgument(0)));
+        when(templateRegistry.resolve(name)).thenReturn(
+                new CompiledTemplate(name, report, CompiledTemplate.Source.PRECOMPILED, 1, fingerprint));
+    }
+
+    private static JRField field(String name, Class<?> type) {
+        JRDesignField field = new JRDesignField();
+        field.setName(name);
+        field.setValueClass(type);
+        return field;
+    }
+
+    @SafeVarargs
+    private static LinkedHashMap<String, List<Map<String, Object>>> data(String template, Map<String, Object>... rows) {
+        LinkedHashMap<String, List<Map<String, Object>>> data = new LinkedHashMap<>();
+        data.put(template, new ArrayList<>(List.of(rows)));
+        return data;
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+}
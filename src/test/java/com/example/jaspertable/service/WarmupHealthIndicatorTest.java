@@ -0,0 +1,81 @@
+package com.example.jaspertable.service;
+
+import com.example.jaspertable.config.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WarmupHealthIndicatorTest {
+
+    private final TemplateWarmup templateWarmup = mock(TemplateWarmup.class);
+    private final ReportProperties properties = new ReportProperties();
+    private final WarmupHealthIndicator indicator = new WarmupHealthIndicator(templateWarmup, properties);
+
+    @BeforeEach
+    void finished() {
+        when(templateWarmup.isFinished()).thenReturn(true);
+        when(templateWarmup.getTemplateCount()).thenReturn(3);
+        when(templateWarmup.getFailures()).thenReturn(Map.of());
+    }
+
+    @Test
+    void outOfServiceUntilFinished() {
+        when(templateWarmup.isFinished()).thenReturn(false);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+
+    @Test
+    void upWhenSomeTemplatesFail() {
+        when(templateWarmup.getFailures()).thenReturn(Map.of("orders", "boom"));
+
+        Health health = indicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails())
+                .containsEntry("templates", 3)
+                .containsEntry("failedCount", 1)
+                .containsEntry("failedTemplates", Map.of("orders", "boom"));
+    }
+
+    @Test
+    void outOfServiceWhenEveryTemplateFails() {
+        when(templateWarmup.getFailures()).thenReturn(Map.of("a", "boom", "b", "boom", "c", "boom"));
+
+        Health health = indicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(health.getDetails()).containsEntry("failedCount", 3);
+    }
+
+    @Test
+    void outOfServiceWhenMasterFails() {
+        when(templateWarmup.getFailures()).thenReturn(Map.of(TemplateWarmup.MASTER, "boom"));
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+
+    @Test
+    void outOfServiceAboveMaxFailures() {
+        properties.getWarmup().setMaxFailures(1);
+        when(templateWarmup.getFailures()).thenReturn(Map.of("a", "boom"));
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UP);
+
+        when(templateWarmup.getFailures()).thenReturn(Map.of("a", "boom", "b", "boom"));
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+
+    @Test
+    void upWithoutTemplates() {
+        when(templateWarmup.getTemplateCount()).thenReturn(0);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+}
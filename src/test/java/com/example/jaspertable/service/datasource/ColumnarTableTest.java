@@ -0,0 +1,120 @@
+package com.example.jaspertable.service.datasource;
+
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ColumnarTableTest {
+
+    private final JRField fullName = field("fullName");
+    private final JRField age = field("age");
+    private final ColumnarTable table = new ColumnarTable(layout(fullName, age), 1);
+
+    @Test
+    void readsRowsInDeclarationOrder() {
+        table.add(row("fullName", "Ivanov", "age", 42));
+        table.add(row("fullName", "Petrov", "age", 37));
+
+        assertThat(read(table.rows(0, 2), fullName, age)).containsExactly("Ivanov", 42, "Petrov", 37);
+    }
+
+    @Test
+    void readsFieldsOutOfOrder() {
+        table.add(row("fullName", "Ivanov", "age", 42));
+
+        // A field with an equal name of another instance, as a template read out of order would ask for
+        assertThat(read(table.row(0), age, field(new String("fullName")))).containsExactly(42, "Ivanov");
+    }
+
+    @Test
+    void undeclaredFieldsReadAsNull() {
+        table.add(row("fullName", "Ivanov", "photo", "base64"));
+        table.add(null);
+
+        assertThat(read(table.rows(0, 2), fullName, age, field("photo")))
+                .containsExactly("Ivanov", null, null, null, null, null);
+    }
+
+    @Test
+    void growsPastExpectedRows() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(table.add(row("fullName", "row" + i, "age", i))).isEqualTo(i);
+        }
+
+        assertThat(table.size()).isEqualTo(5);
+        assertThat(read(table.rows(3, 5), fullName, age)).containsExactly("row3", 3, "row4", 4);
+    }
+
+    @Test
+    void moveFirstRewindsToTheFirstRowOfTheRange() {
+        for (int i = 0; i < 4; i++) {
+            table.add(row("fullName", "row" + i, "age", i));
+        }
+        ColumnarDataSource source = table.rows(1, 3);
+        List<Object> first = read(source, fullName);
+
+        source.moveFirst();
+
+        assertThat(read(source, fullName)).isEqualTo(first).containsExactly("row1", "row2");
+    }
+
+    @Test
+    void clearKeepsNoValuesOfRemovedRows() {
+        table.add(row("fullName", "Ivanov", "age", 42));
+        table.clear();
+        table.add(row("fullName", "Petrov"));
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(read(table.row(0), fullName, age)).containsExactly("Petrov", null);
+    }
+
+    @Test
+    void rejectsRangesOutsideTheTable() {
+        table.add(row("fullName", "Ivanov"));
+
+        assertThatThrownBy(() -> table.rows(0, 2)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> table.row(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    private static List<Object> read(ColumnarDataSource source, JRField... fields) {
+        List<Object> values = new ArrayList<>();
+        while (source.next()) {
+            for (JRField field : fields) {
+                values.add(source.getFieldValue(field));
+            }
+        }
+        return values;
+    }
+
+    private static ColumnLayout layout(JRField... fields) {
+        JasperReport report = mock(JasperReport.class);
+        when(report.getFields()).thenReturn(fields);
+        return ColumnLayout.of(report);
+    }
+
+    private static JRField field(String name) {
+        JRDesignField field = new JRDesignField();
+        field.setName(name);
+        field.setValueClass(Object.class);
+        return field;
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+}